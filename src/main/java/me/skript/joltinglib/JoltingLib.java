@@ -1,13 +1,21 @@
 package me.skript.joltinglib;
 
+import me.skript.joltinglib.configurations.JConfigBinding;
+import me.skript.joltinglib.configurations.JConfigPath;
 import me.skript.joltinglib.configurations.JYML;
 import me.skript.joltinglib.configurations.JFilesManager;
 import me.skript.joltinglib.glow.JGlow;
 import me.skript.joltinglib.items.SkullCache;
+import me.skript.joltinglib.utilities.JDebug;
+import me.skript.joltinglib.utilities.JIOGuard;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 
 public final class JoltingLib extends JavaPlugin implements Listener {
@@ -17,12 +25,26 @@ public final class JoltingLib extends JavaPlugin implements Listener {
     private JYML configurationFile;
     private JGlow glowManager;
     private SkullCache skullCache;
+    private JConfigBinding<Settings> settings;
+
+    /**
+     * The settings of configuration.yml
+     */
+    public record Settings(@JConfigPath(defaultValue = "false") boolean debugEnabled,
+                           @JConfigPath(defaultValue = "true") boolean asyncLogging,
+                           MainThreadIO mainThreadIo) {}
+
+    public record MainThreadIO(@JConfigPath(defaultValue = "OFF") JIOGuard.Mode mode,
+                               @JConfigPath(defaultValue = "100") int sampleRate) {}
 
     @Override
     public void onEnable() {
         instance = this;
         this.glowManager = new JGlow(this);
         this.configurationFile = filesManager.createYML("configuration");
+        this.settings = configurationFile.bind(Settings.class);
+        this.configurationFile.addReloadListener(changedPaths -> applySettings());
+        applySettings();
 
         this.skullCache = new SkullCache(this);
         this.skullCache.preloadPlayers();
@@ -33,10 +55,42 @@ public final class JoltingLib extends JavaPlugin implements Listener {
     @Override
     public void onDisable() {
         glowManager.disable();
+        filesManager.disableHotReload();
+        filesManager.flushAll();
+        JFilesManager.shutdownWriter();
+        JDebug.shutdown();
 
         this.getLogger().log(Level.INFO, "[JoltingLib] Library has been disabled!");
     }
 
+    private void applySettings() {
+        JDebug.setDebugEnabled(getSettings().debugEnabled());
+        JDebug.setAsync(getSettings().asyncLogging());
+        JDebug.setCategoryLevels(readCategoryLevels());
+
+        MainThreadIO mainThreadIo = getSettings().mainThreadIo();
+        JIOGuard.setMode(mainThreadIo.mode());
+        JIOGuard.setSampleRate(mainThreadIo.sampleRate());
+    }
+
+    private Map<String, Level> readCategoryLevels() {
+        Map<String, Level> levels = new HashMap<>();
+        ConfigurationSection section = configurationFile.getConfig().getConfigurationSection("log-categories");
+        if (section == null) {
+            return levels;
+        }
+
+        for (String name : section.getKeys(false)) {
+            String level = section.getString(name, "");
+            try {
+                levels.put(name, Level.parse(level.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                this.getLogger().log(Level.SEVERE, "[JoltingLib] Invalid level of log category " + name + ": " + level);
+            }
+        }
+        return levels;
+    }
+
     public static JoltingLib getInstance() {
         return instance;
     }
@@ -45,6 +99,13 @@ public final class JoltingLib extends JavaPlugin implements Listener {
         return configurationFile.getConfig();
     }
 
+    /**
+     * @return the current settings snapshot, or null before the library is enabled
+     */
+    public Settings getSettings() {
+        return settings == null ? null : settings.get();
+    }
+
     public SkullCache getSkullCache() {
         return skullCache;
     }
@@ -0,0 +1,384 @@
+package me.skript.joltinglib.configurations;
+
+import me.skript.joltinglib.utilities.JDebug;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * An immutable, typed snapshot of a {@link JYML}, see {@link JYML#bind(Class)}.
+ * The type is a record or an interface; each component or method is read from the path of its
+ * name in kebab case, or the path given by {@link JConfigPath}. Components whose type is itself
+ * a record or interface bind the section at their path. Interface default methods supply the
+ * default of their value.
+ * The reflection work is compiled once per type, and the snapshot is rebuilt only when the file
+ * is reloaded. Reading a record component is a plain accessor call instead of a walk through the
+ * section tree; interface snapshots are proxies that look each call up in a map, so prefer records
+ * for values read on hot paths.
+ * Missing or invalid values are reported once per build, falling back to their default
+ *
+ * @param <T> the bound record or interface type
+ */
+public final class JConfigBinding<T> {
+
+    private static final ClassValue<Node> COMPILED = new ClassValue<>() {
+        @Override
+        protected Node computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    private final JYML<?> yml;
+    private final Class<T> type;
+    private volatile T snapshot;
+    private volatile List<String> problems = List.of();
+
+    JConfigBinding(JYML<?> yml, Class<T> type) {
+        this.yml = yml;
+        this.type = type;
+        COMPILED.get(type); // fail fast on unsupported types
+        build(true);
+    }
+
+    /**
+     * @return the current snapshot of the configuration
+     */
+    public T get() {
+        return snapshot;
+    }
+
+    /**
+     * @return the type the configuration is bound to
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the missing or invalid values found when the current snapshot was built
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * Builds a new snapshot from the current configuration after a reload
+     */
+    void rebuild() {
+        build(false);
+    }
+
+    /**
+     * Builds a new snapshot from the current configuration and reports its problems and defaults.
+     * Problems are logged regardless of the debug flag, which may itself come from the bound file.
+     * Defaults are logged the same way when binding, after a reload only while debugging
+     */
+    private void build(boolean initial) {
+        List<String> errors = new ArrayList<>();
+        List<String> defaults = new ArrayList<>();
+        T built = type.cast(COMPILED.get(type).build(yml.getConfig(), "", errors, defaults));
+
+        String fileName = yml.getFile().getName();
+        for (String error : errors) {
+            JDebug.logAlways(Level.SEVERE, "Invalid value in " + fileName + ": " + error);
+        }
+        for (String path : defaults) {
+            if (initial) {
+                JDebug.logAlways(Level.INFO, "Using the default of " + path + " in " + fileName);
+            } else {
+                JDebug.log(Level.INFO, "Using the default of " + path + " in " + fileName);
+            }
+        }
+
+        this.problems = List.copyOf(errors);
+        this.snapshot = built;
+    }
+
+    private static Node compile(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+
+        if (type.isRecord()) {
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                RecordComponent component = components[i];
+                types[i] = component.getType();
+                properties.add(property(component.getName(), component.getType(), component.getGenericType(),
+                        component.getAnnotation(JConfigPath.class), null));
+            }
+
+            try {
+                MethodHandle constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                        .findConstructor(type, MethodType.methodType(void.class, types))
+                        .asSpreader(Object[].class, types.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+                return new Node(type, properties, constructor);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot access the canonical constructor of " + type.getName(), e);
+            }
+        }
+
+        if (type.isInterface()) {
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                        || method.getReturnType() == void.class) {
+                    continue;
+                }
+                properties.add(property(method.getName(), method.getReturnType(), method.getGenericReturnType(),
+                        method.getAnnotation(JConfigPath.class), method));
+            }
+            return new Node(type, properties, null);
+        }
+
+        throw new IllegalArgumentException(type.getName() + " must be a record or an interface to be bound");
+    }
+
+    private static Property property(String name, Class<?> type, Type genericType, JConfigPath annotation, Method method) {
+        String path = annotation != null && !annotation.value().isEmpty() ? annotation.value() : kebabCase(name);
+        Node nested = type.isRecord() || (type.isInterface() && !Collection.class.isAssignableFrom(type)
+                && !Map.class.isAssignableFrom(type)) ? COMPILED.get(type) : null;
+
+        Class<?> elementType = String.class;
+        if (genericType instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] instanceof Class<?> element) {
+            elementType = element;
+        }
+
+        Object defaultValue = null;
+        boolean hasDefault = false;
+        if (annotation != null && annotation.defaultValue().length > 0) {
+            String[] raw = annotation.defaultValue();
+            defaultValue = List.class.isAssignableFrom(type) ? convert(List.of(raw), type, elementType) : convert(raw[0], type, elementType);
+            if (defaultValue == null) {
+                throw new IllegalArgumentException("Invalid default of " + name + ": " + String.join(", ", raw));
+            }
+            hasDefault = true;
+        }
+
+        boolean defaultMethod = method != null && method.isDefault();
+        return new Property(name, path, type, elementType, nested, defaultValue, hasDefault || defaultMethod, method);
+    }
+
+    private static String kebabCase(String name) {
+        StringBuilder path = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0 && !Character.isUpperCase(name.charAt(i - 1))) {
+                    path.append('-');
+                }
+                path.append(Character.toLowerCase(c));
+            } else {
+                path.append(c);
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * Converts a raw config value to the target type
+     *
+     * @return the converted value, or null if it does not fit the type
+     */
+    private static Object convert(Object raw, Class<?> type, Class<?> elementType) {
+        if (type == String.class) {
+            return raw instanceof ConfigurationSection || raw instanceof Collection ? null : String.valueOf(raw);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            if (raw instanceof Boolean) {
+                return raw;
+            }
+            String text = String.valueOf(raw).trim();
+            return text.equalsIgnoreCase("true") ? Boolean.TRUE : text.equalsIgnoreCase("false") ? Boolean.FALSE : null;
+        }
+        if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
+            return convertNumber(raw, type);
+        }
+        if (type.isEnum()) {
+            if (raw instanceof Boolean bool) {
+                return booleanConstant(type, bool); // YAML 1.1 reads an unquoted OFF or ON as a boolean
+            }
+            for (Object constant : type.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equalsIgnoreCase(String.valueOf(raw).trim())) {
+                    return constant;
+                }
+            }
+            return null;
+        }
+        if (List.class.isAssignableFrom(type)) {
+            if (!(raw instanceof List<?> list)) {
+                return null;
+            }
+            List<Object> converted = new ArrayList<>(list.size());
+            for (Object element : list) {
+                Object value = convert(element, elementType, String.class);
+                if (value == null) {
+                    return null;
+                }
+                converted.add(value);
+            }
+            return Collections.unmodifiableList(converted);
+        }
+        return type.isInstance(raw) ? raw : null;
+    }
+
+    private static Object booleanConstant(Class<?> type, boolean value) {
+        List<String> names = value ? List.of("ON", "TRUE", "YES") : List.of("OFF", "FALSE", "NO");
+        for (Object constant : type.getEnumConstants()) {
+            if (names.contains(((Enum<?>) constant).name().toUpperCase(Locale.ROOT))) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    private static Object convertNumber(Object raw, Class<?> type) {
+        double value;
+        if (raw instanceof Number number) {
+            value = number.doubleValue();
+        } else {
+            try {
+                value = Double.parseDouble(String.valueOf(raw).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        if (type == double.class || type == Double.class) {
+            return value;
+        }
+        if (type == float.class || type == Float.class) {
+            return (float) value;
+        }
+        if (value != Math.rint(value)) {
+            return null; // no silent truncation of 1.5 into an int
+        }
+        if (type == long.class || type == Long.class) {
+            return raw instanceof Long || raw instanceof Integer ? ((Number) raw).longValue() : (long) value;
+        }
+        if (type == int.class || type == Integer.class) {
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (int) value : null;
+        }
+        if (type == short.class || type == Short.class) {
+            return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ? (short) value : null;
+        }
+        if (type == byte.class || type == Byte.class) {
+            return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? (byte) value : null;
+        }
+        return null;
+    }
+
+    private static Object zero(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return List.class.isAssignableFrom(type) ? List.of() : null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        return convertNumber(0, type);
+    }
+
+    private record Property(String name, String path, Class<?> type, Class<?> elementType, Node nested,
+                            Object defaultValue, boolean hasDefault, Method method) {
+
+        /**
+         * @return true if the default comes from an interface default method instead of {@link JConfigPath}
+         */
+        boolean usesDefaultMethod() {
+            return method != null && method.isDefault() && defaultValue == null;
+        }
+    }
+
+    private record Node(Class<?> type, List<Property> properties, MethodHandle constructor) {
+
+        Object build(ConfigurationSection root, String prefix, List<String> errors, List<String> defaults) {
+            Object[] values = new Object[properties.size()];
+            boolean[] useDefaultMethod = new boolean[values.length];
+
+            for (int i = 0; i < values.length; i++) {
+                Property property = properties.get(i);
+                String path = prefix.isEmpty() ? property.path() : prefix + "." + property.path();
+
+                if (property.nested() != null) {
+                    values[i] = property.nested().build(root, path, errors, defaults);
+                    continue;
+                }
+
+                Object raw = root.get(path);
+                Object value = raw == null ? null : convert(raw, property.type(), property.elementType());
+                if (value != null) {
+                    values[i] = value;
+                    continue;
+                }
+
+                if (raw != null) {
+                    errors.add(path + " expects " + property.type().getSimpleName() + " but is '" + raw + "'");
+                } else if (!property.hasDefault()) {
+                    errors.add(path + " is missing");
+                }
+
+                if (property.hasDefault()) {
+                    defaults.add(path);
+                    values[i] = property.defaultValue();
+                    useDefaultMethod[i] = property.usesDefaultMethod();
+                } else {
+                    values[i] = zero(property.type());
+                }
+            }
+
+            if (constructor != null) {
+                try {
+                    return (Object) constructor.invokeExact(values);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Cannot create " + type.getName(), e);
+                }
+            }
+            return proxy(values, useDefaultMethod);
+        }
+
+        /**
+         * Creates the interface snapshot. Values are resolved once, including the ones coming
+         * from default methods, so calls only look up the precomputed value of the method
+         */
+        private Object proxy(Object[] values, boolean[] useDefaultMethod) {
+            Map<Method, Object> byMethod = new HashMap<>();
+            Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+                Object value = byMethod.get(method);
+                if (value != null || byMethod.containsKey(method)) {
+                    return value;
+                }
+                return switch (method.getName()) {
+                    case "toString" -> type.getSimpleName() + byMethod.values();
+                    case "hashCode" -> System.identityHashCode(self);
+                    case "equals" -> self == args[0];
+                    default -> InvocationHandler.invokeDefault(self, method, args);
+                };
+            });
+
+            for (int i = 0; i < values.length; i++) {
+                if (!useDefaultMethod[i]) {
+                    byMethod.put(properties.get(i).method(), values[i]);
+                }
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (useDefaultMethod[i]) {
+                    Method method = properties.get(i).method();
+                    try {
+                        byMethod.put(method, InvocationHandler.invokeDefault(proxy, method));
+                    } catch (Throwable e) {
+                        throw new IllegalStateException("Cannot call the default of " + method.getName(), e);
+                    }
+                }
+            }
+            return proxy;
+        }
+    }
+}
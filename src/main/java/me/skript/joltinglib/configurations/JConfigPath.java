@@ -0,0 +1,26 @@
+package me.skript.joltinglib.configurations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Configures how a record component or interface method is bound by {@link JConfigBinding}.
+ * Without it, the path is the name converted to kebab case, e.g. {@code sampleRate} reads {@code sample-rate}
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.RECORD_COMPONENT, ElementType.METHOD})
+public @interface JConfigPath {
+
+    /**
+     * @return the path relative to the enclosing section, empty to derive it from the name
+     */
+    String value() default "";
+
+    /**
+     * @return the default used when the value is missing or invalid, parsed like a config value.
+     * Lists take one entry per element. Empty means the value is required
+     */
+    String[] defaultValue() default {};
+}
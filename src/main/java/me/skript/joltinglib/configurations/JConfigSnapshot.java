@@ -0,0 +1,289 @@
+package me.skript.joltinglib.configurations;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Compact binary form of a parsed configuration, including its comments, header and footer.
+ * Decoding it is a single pass over the bytes with no YAML parsing involved, which is what
+ * makes {@link JYML} start fast on large files. The section tree codec is shared with the
+ * other binary file formats. Values other than strings, booleans, numbers, lists, maps and
+ * sections (e.g. serialized items) are not supported, such files are always parsed from YAML
+ */
+final class JConfigSnapshot {
+
+    private static final int MAGIC = 0x4A594D53; // "JYMS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte TRUE = 2;
+    private static final byte FALSE = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+    private static final byte SECTION = 9;
+
+    /**
+     * Thrown when a value cannot be stored in the binary form
+     */
+    static final class UnsupportedValueException extends IOException {
+        UnsupportedValueException(Object value) {
+            super("Unsupported value type: " + value.getClass().getName());
+        }
+    }
+
+    private JConfigSnapshot() {}
+
+    /**
+     * Encodes a snapshot of a configuration for the given state of its source file
+     *
+     * @param config the parsed configuration
+     * @param size   the size of the source file
+     * @param mtime  the last modification time of the source file in milliseconds
+     * @param hash   the content hash of the source file
+     * @return the snapshot bytes
+     * @throws IOException If the configuration holds unsupported values
+     */
+    static byte[] encode(FileConfiguration config, long size, long mtime, long hash) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(size);
+        out.writeLong(mtime);
+        out.writeLong(hash);
+        writeDocument(out, config);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Fills in the source file state of a snapshot encoded before the file was written
+     *
+     * @param snapshot the snapshot bytes, changed in place
+     * @param size     the size of the source file
+     * @param mtime    the last modification time of the source file in milliseconds
+     * @param hash     the content hash of the source file
+     */
+    static void stamp(byte[] snapshot, long size, long mtime, long hash) {
+        ByteBuffer.wrap(snapshot).putLong(8, size).putLong(16, mtime).putLong(24, hash);
+    }
+
+    /**
+     * Loads a snapshot if it was written for exactly the given state of the source file.
+     * The header is checked first, the body is then read into a heap buffer and decoded. It is not
+     * memory-mapped, a mapping lives until garbage collection and would stop the snapshot from being
+     * replaced on Windows
+     *
+     * @param snapshot the snapshot file
+     * @param size     the current size of the source file
+     * @param mtime    the current last modification time of the source file in milliseconds
+     * @param hash     the current content hash of the source file
+     * @return the decoded configuration, or null if the snapshot is missing, stale or corrupt
+     */
+    static YamlConfiguration read(Path snapshot, long size, long mtime, long hash) {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION
+                    || header.getLong() != size || header.getLong() != mtime || header.getLong() != hash) {
+                return null;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(Math.toIntExact(channel.size() - HEADER_BYTES));
+            while (body.hasRemaining() && channel.read(body) >= 0) {
+                // read the whole body
+            }
+            body.flip();
+            YamlConfiguration config = new YamlConfiguration();
+            readDocument(body, config);
+            return config;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null; // corrupt or unreadable, the YAML is parsed instead
+        }
+    }
+
+    /**
+     * Writes the header, footer and section tree of a configuration
+     */
+    static void writeDocument(DataOutputStream out, FileConfiguration config) throws IOException {
+        writeLines(out, config.options().getHeader());
+        writeLines(out, config.options().getFooter());
+        writeSection(out, config);
+    }
+
+    /**
+     * Reads what {@link #writeDocument(DataOutputStream, FileConfiguration)} wrote into an empty configuration
+     */
+    static void readDocument(ByteBuffer in, FileConfiguration config) {
+        config.options().setHeader(readLines(in));
+        config.options().setFooter(readLines(in));
+        readSection(in, config);
+    }
+
+    private static void writeSection(DataOutputStream out, ConfigurationSection section) throws IOException {
+        Set<String> keys = section.getKeys(false);
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            writeString(out, key);
+            writeLines(out, section.getComments(key));
+            writeLines(out, section.getInlineComments(key));
+
+            Object value = section.get(key);
+            if (value instanceof ConfigurationSection child) {
+                out.writeByte(SECTION);
+                writeSection(out, child);
+            } else {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    private static void readSection(ByteBuffer in, ConfigurationSection section) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            List<String> comments = readLines(in);
+            List<String> inlineComments = readLines(in);
+
+            if (in.get(in.position()) == SECTION) {
+                in.get();
+                readSection(in, section.createSection(key));
+            } else {
+                section.set(key, readValue(in));
+            }
+            section.setComments(key, comments);
+            section.setInlineComments(key, inlineComments);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case null -> out.writeByte(NULL);
+            case String string -> {
+                out.writeByte(STRING);
+                writeString(out, string);
+            }
+            case Boolean bool -> out.writeByte(bool ? TRUE : FALSE);
+            case Integer number -> {
+                out.writeByte(INT);
+                out.writeInt(number);
+            }
+            case Long number -> {
+                out.writeByte(LONG);
+                out.writeLong(number);
+            }
+            case Double number -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(number);
+            }
+            case List<?> list -> {
+                out.writeByte(LIST);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    writeValue(out, element);
+                }
+            }
+            case Map<?, ?> map -> {
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+            default -> throw new UnsupportedValueException(value);
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        byte tag = in.get();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case TRUE -> Boolean.TRUE;
+            case FALSE -> Boolean.FALSE;
+            case INT -> in.getInt();
+            case LONG -> in.getLong();
+            case DOUBLE -> in.getDouble();
+            case LIST -> {
+                int size = in.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                yield list;
+            }
+            case MAP -> {
+                int size = in.getInt();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                yield map;
+            }
+            default -> throw new IllegalStateException("Unknown value tag " + tag);
+        };
+    }
+
+    private static void writeLines(DataOutputStream out, List<String> lines) throws IOException {
+        if (lines == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(lines.size());
+        for (String line : lines) {
+            writeString(out, line);
+        }
+    }
+
+    private static List<String> readLines(ByteBuffer in) {
+        int count = in.getInt();
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(readString(in));
+        }
+        return lines;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1); // blank comment lines are null entries
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,24 @@
+package me.skript.joltinglib.configurations;
+
+import org.bukkit.plugin.Plugin;
+
+/**
+ * A configuration file stored as a gzip compressed binary tree, with the same section API as {@link JYML}.
+ * The smallest and fastest format to load and save, for large data files that are never edited by hand.
+ * Use {@link JFileFormat#convert(java.io.File, JFileFormat, java.io.File, JFileFormat)} to turn it back into YAML
+ *
+ * @param <P> the plugin owning the file
+ */
+public class JDAT<P extends Plugin> extends JYML<P> {
+
+    /**
+     * Constructs a new JDAT instance
+     *
+     * @param plugin the plugin instance using this binary file
+     * @param fileName the name of the binary file (without extension)
+     * @param folderPath the folder path relative to the plugin's data folder
+     */
+    protected JDAT(P plugin, String fileName, String... folderPath) {
+        super(plugin, JFileFormat.BINARY, false, fileName, folderPath);
+    }
+}
@@ -0,0 +1,310 @@
+package me.skript.joltinglib.configurations;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The storage formats of configuration files. Every format is loaded into the same
+ * {@link FileConfiguration} section tree, so code reading and writing values does not change
+ * with the format of the file.
+ * <ul>
+ *     <li>{@link #YAML} keeps comments and is meant to be edited by hand, but is the slowest to parse and write</li>
+ *     <li>{@link #JSON} parses and writes several times faster, comments are not stored</li>
+ *     <li>{@link #BINARY} is a gzip compressed binary tree, the smallest and fastest, keeping comments</li>
+ * </ul>
+ * JSON and binary files support strings, booleans, numbers, lists, maps and sections.
+ * Serialized objects such as items are only supported by YAML
+ */
+public enum JFileFormat {
+
+    YAML("yml") {
+        @Override
+        byte[] encode(FileConfiguration config) {
+            return config.saveToString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void decode(byte[] data, FileConfiguration config) throws InvalidConfigurationException {
+            config.loadFromString(new String(data, StandardCharsets.UTF_8));
+        }
+    },
+
+    JSON("json") {
+        @Override
+        byte[] encode(FileConfiguration config) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+                writer.setIndent("  ");
+                writeJson(writer, config);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        void decode(byte[] data, FileConfiguration config) throws InvalidConfigurationException {
+            clear(config);
+            if (data.length == 0) {
+                return;
+            }
+            try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                readJsonSection(reader, config);
+                reader.endObject();
+            } catch (IOException | RuntimeException e) {
+                throw new InvalidConfigurationException("Invalid JSON: " + e.getMessage(), e);
+            }
+        }
+    },
+
+    BINARY("dat") {
+        private static final int MAGIC = 0x4A594D42; // "JYMB"
+        private static final int VERSION = 1;
+
+        @Override
+        byte[] encode(FileConfiguration config) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            try (DataOutputStream compressed = new DataOutputStream(new GZIPOutputStream(out))) {
+                JConfigSnapshot.writeDocument(compressed, config);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        void decode(byte[] data, FileConfiguration config) throws InvalidConfigurationException {
+            clear(config);
+            if (data.length == 0) {
+                return;
+            }
+            ByteBuffer header = ByteBuffer.wrap(data);
+            if (data.length < 8 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new InvalidConfigurationException("Not a binary configuration file");
+            }
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data, 8, data.length - 8))) {
+                JConfigSnapshot.readDocument(ByteBuffer.wrap(in.readAllBytes()), config);
+            } catch (IOException | RuntimeException e) {
+                throw new InvalidConfigurationException("Corrupt binary configuration: " + e.getMessage(), e);
+            }
+        }
+    };
+
+    private final String extension;
+
+    JFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the file extension of the format, without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Serializes a configuration into the bytes of a file
+     *
+     * @throws IOException If the configuration holds values the format cannot store
+     */
+    abstract byte[] encode(FileConfiguration config) throws IOException;
+
+    /**
+     * Replaces the content of a configuration with the content of a file
+     *
+     * @throws InvalidConfigurationException If the content is not valid for the format
+     */
+    abstract void decode(byte[] data, FileConfiguration config) throws InvalidConfigurationException;
+
+    /**
+     * Result of {@link #benchmark(FileConfiguration, int)} for one format
+     *
+     * @param format     the format
+     * @param bytes      the size of the file
+     * @param saveMillis the average time to serialize the configuration
+     * @param loadMillis the average time to parse the file
+     */
+    public record Benchmark(JFileFormat format, int bytes, double saveMillis, double loadMillis) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d bytes, save %.3f ms, load %.3f ms", format, bytes, saveMillis, loadMillis);
+        }
+    }
+
+    /**
+     * Converts a file to another format, e.g. a large YAML data file to binary.
+     * The source file is kept, the target file is replaced atomically
+     *
+     * @param source       the file to convert
+     * @param sourceFormat the format of the file to convert
+     * @param target       the file to write
+     * @param targetFormat the format to write
+     * @throws IOException If the source cannot be read or parsed, or the target cannot be written
+     */
+    public static void convert(File source, JFileFormat sourceFormat, File target, JFileFormat targetFormat) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            sourceFormat.decode(Files.readAllBytes(source.toPath()), config);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Failed to parse " + source.getName() + ": " + e.getMessage(), e);
+        }
+        JFileWriter.writeAtomically(target.toPath(), targetFormat.encode(config), true);
+    }
+
+    /**
+     * Measures how long every format takes to save and load the same configuration in memory,
+     * and how large its file is. Formats that cannot store the values of the configuration are left out
+     *
+     * @param config the data to measure with, ideally a copy of a real data file
+     * @param rounds how many times to save and load per format, after one warm-up round
+     * @return the results of every format
+     */
+    public static List<Benchmark> benchmark(FileConfiguration config, int rounds) {
+        rounds = Math.max(1, rounds);
+        List<Benchmark> results = new ArrayList<>();
+        for (JFileFormat format : values()) {
+            try {
+                byte[] data = format.encode(config);
+                format.decode(data, new YamlConfiguration());
+
+                long start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    data = format.encode(config);
+                }
+                long saved = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    format.decode(data, new YamlConfiguration());
+                }
+                long loaded = System.nanoTime();
+
+                results.add(new Benchmark(format, data.length, (saved - start) / 1_000_000.0 / rounds,
+                        (loaded - saved) / 1_000_000.0 / rounds));
+            } catch (IOException | InvalidConfigurationException e) {
+                // the format cannot store this data
+            }
+        }
+        return results;
+    }
+
+    private static void clear(ConfigurationSection section) {
+        for (String key : section.getKeys(false)) {
+            section.set(key, null);
+        }
+    }
+
+    private static void writeJson(JsonWriter writer, Object value) throws IOException {
+        switch (value) {
+            case null -> writer.nullValue();
+            case ConfigurationSection section -> {
+                writer.beginObject();
+                for (String key : section.getKeys(false)) {
+                    writer.name(key);
+                    writeJson(writer, section.get(key));
+                }
+                writer.endObject();
+            }
+            case Map<?, ?> map -> {
+                writer.beginObject();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writer.name(String.valueOf(entry.getKey()));
+                    writeJson(writer, entry.getValue());
+                }
+                writer.endObject();
+            }
+            case List<?> list -> {
+                writer.beginArray();
+                for (Object element : list) {
+                    writeJson(writer, element);
+                }
+                writer.endArray();
+            }
+            case String string -> writer.value(string);
+            case Boolean bool -> writer.value(bool);
+            case Number number -> {
+                if (number instanceof Double d && !Double.isFinite(d) || number instanceof Float f && !Float.isFinite(f)) {
+                    throw new JConfigSnapshot.UnsupportedValueException(value); // JSON has no NaN or infinity
+                }
+                writer.value(number);
+            }
+            default -> throw new JConfigSnapshot.UnsupportedValueException(value);
+        }
+    }
+
+    private static void readJsonSection(JsonReader reader, ConfigurationSection section) throws IOException {
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                readJsonSection(reader, section.createSection(key));
+                reader.endObject();
+            } else {
+                section.set(key, readJson(reader));
+            }
+        }
+    }
+
+    private static Object readJson(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    map.put(reader.nextName(), readJson(reader));
+                }
+                reader.endObject();
+                return map;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(readJson(reader));
+                }
+                reader.endArray();
+                return list;
+            }
+            case BOOLEAN -> {
+                return reader.nextBoolean();
+            }
+            case NUMBER -> {
+                return number(reader.nextString());
+            }
+            case NULL -> {
+                reader.nextNull();
+                return null;
+            }
+            default -> {
+                return reader.nextString();
+            }
+        }
+    }
+
+    /**
+     * Parses a JSON number into the type YAML would give it, so values read the same in both formats
+     */
+    private static Object number(String text) {
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(text);
+                return value == (int) value ? (Object) (int) value : (Object) value;
+            } catch (NumberFormatException e) {
+                // too large for a long
+            }
+        }
+        return Double.parseDouble(text);
+    }
+}
@@ -0,0 +1,117 @@
+package me.skript.joltinglib.configurations;
+
+import me.skript.joltinglib.utilities.JDebug;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes configuration files for every {@link JYML} in the background.
+ * Files are written to a temporary file next to the target and then moved over the target
+ * in one step, so a crash mid-write leaves either the old or the new file but never a truncated one.
+ * Background writes also sync the temporary file to disk before the move, so the new content
+ * survives a power loss; synchronous saves skip that to not stall the calling thread
+ */
+final class JFileWriter {
+
+    private static final long SHUTDOWN_MILLIS = 10_000;
+
+    private static ScheduledExecutorService scheduler; // guarded by the class, started on first use
+
+    private JFileWriter() {}
+
+    /**
+     * Runs a write on the I/O thread after a delay
+     *
+     * @param write       the write to run
+     * @param delayMillis the delay in milliseconds
+     */
+    static synchronized void schedule(Runnable write, long delayMillis) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "JoltingLib-FileWriter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        scheduler.schedule(write, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs every scheduled write, including ones still waiting for their delay, then stops the I/O thread.
+     * A write scheduled afterwards starts a new thread
+     */
+    static void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (JFileWriter.class) {
+            executor = scheduler;
+            scheduler = null;
+        }
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown(); // delayed writes still run after shutdown
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                JDebug.logAlways(Level.WARNING, "Configuration writes did not finish within " + SHUTDOWN_MILLIS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hashes file content to detect changes cheaply, combining its length and CRC32C checksum
+     *
+     * @param data the content to hash
+     * @return the hash of the content
+     */
+    static long hash(byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return ((long) data.length << 32) | crc.getValue();
+    }
+
+    /**
+     * Replaces the content of a file atomically
+     *
+     * @param target the file to replace
+     * @param data   the new content
+     * @param sync   whether to sync the content to disk before replacing the file
+     * @throws IOException If the temporary file cannot be written or moved
+     */
+    static void writeAtomically(Path target, byte[] data, boolean sync) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(true);
+            }
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
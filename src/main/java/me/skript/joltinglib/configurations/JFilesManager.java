@@ -1,14 +1,29 @@
 package me.skript.joltinglib.configurations;
 
+import me.skript.joltinglib.utilities.JDebug;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.logging.Level;
 
 public class JFilesManager<P extends Plugin> {
 
+    private static final long WATCH_SETTLE_MILLIS = 100; // editors often write a file in several steps
+    private static final int SLOWEST_REPORTED = 5;
+
     private final P plugin;
     private final Map<String, Object> filesMap;
+    private final Map<Path, JYML<P>> watchedFiles = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private WatchService watchService;
+    private volatile boolean snapshotCache;
+    private final List<JYMLRegistry<P>> registries = new CopyOnWriteArrayList<>();
 
     /**
      * Constructs a new instance of JFilesManager
@@ -17,7 +32,7 @@ public class JFilesManager<P extends Plugin> {
      */
     public JFilesManager(P plugin) {
         this.plugin = plugin;
-        this.filesMap = new HashMap<>();
+        this.filesMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -83,6 +98,17 @@ public class JFilesManager<P extends Plugin> {
         return false;
     }
 
+    /**
+     * Makes files created from now on load from a parsed binary snapshot kept next to each file,
+     * skipping the YAML parser on later starts while the file is unchanged.
+     * Worth it for large files, see {@link JYML#JYML(Plugin, boolean, String, String...)}
+     *
+     * @param enabled whether new files use the snapshot cache
+     */
+    public void setSnapshotCache(boolean enabled) {
+        this.snapshotCache = enabled;
+    }
+
     /**
      * Creates or retrieves a YAML configuration file
      *
@@ -92,7 +118,192 @@ public class JFilesManager<P extends Plugin> {
      */
     public JYML<P> createYML(String fileName, String... folderPath) {
         String key = String.join("/", folderPath) + "/" + fileName + ".yml";
-        return (JYML<P>) filesMap.computeIfAbsent(key, k -> new JYML<>(plugin, fileName, folderPath));
+        return register(key, () -> new JYML<>(plugin, snapshotCache, fileName, folderPath));
+    }
+
+    /**
+     * Creates or retrieves a JSON configuration file
+     *
+     * @param fileName the name of the file (without extension)
+     * @param folderPath the optional path for the file
+     * @return the JJSON instance
+     */
+    public JJSON<P> createJSON(String fileName, String... folderPath) {
+        String key = String.join("/", folderPath) + "/" + fileName + ".json";
+        return register(key, () -> new JJSON<>(plugin, fileName, folderPath));
+    }
+
+    /**
+     * Creates or retrieves a compressed binary configuration file
+     *
+     * @param fileName the name of the file (without extension)
+     * @param folderPath the optional path for the file
+     * @return the JDAT instance
+     */
+    public JDAT<P> createDAT(String fileName, String... folderPath) {
+        String key = String.join("/", folderPath) + "/" + fileName + ".dat";
+        return register(key, () -> new JDAT<>(plugin, fileName, folderPath));
+    }
+
+    /**
+     * Converts a file to another format and registers the converted file, e.g. to move a large
+     * YAML data file to binary once. The source file is kept; if the file was already
+     * converted, the existing target is returned as is
+     *
+     * @param fileName the name of the file (without extension)
+     * @param from the current format of the file
+     * @param to the format to convert to
+     * @param folderPath the optional path for the file
+     * @return the converted file, or null if the conversion failed
+     */
+    public JYML<P> convertFile(String fileName, JFileFormat from, JFileFormat to, String... folderPath) {
+        String folder = String.join("/", folderPath);
+        File directory = folder.isEmpty() ? plugin.getDataFolder() : new File(plugin.getDataFolder(), folder);
+        File source = new File(directory, fileName + "." + from.getExtension());
+        File target = new File(directory, fileName + "." + to.getExtension());
+
+        if (!target.exists()) {
+            Object registered = filesMap.get(folder + "/" + source.getName());
+            if (registered instanceof JYML) {
+                ((JYML<?>) registered).flush();
+            }
+            try {
+                JFileFormat.convert(source, from, target, to);
+            } catch (IOException e) {
+                JDebug.log(Level.SEVERE, "Failed to convert file: " + source.getName() + ". Error: " + e.getMessage());
+                return null;
+            }
+        }
+
+        return switch (to) {
+            case YAML -> createYML(fileName, folderPath);
+            case JSON -> createJSON(fileName, folderPath);
+            case BINARY -> createDAT(fileName, folderPath);
+        };
+    }
+
+    /**
+     * Returns the registered file of a key, loading and registering it first if needed. The file is
+     * loaded outside the map, so parallel loads of different files never wait on each other. If two
+     * threads load the same file at once, the first one registered wins and the other copy, which
+     * holds no open resources and has nothing to save yet, is dropped
+     */
+    private <T extends JYML<P>> T register(String key, Supplier<T> loader) {
+        Object registered = filesMap.get(key);
+        if (registered == null) {
+            T loaded = loader.get();
+            registered = filesMap.putIfAbsent(key, loaded);
+            if (registered == null) {
+                registered = loaded;
+            }
+        }
+        T file = (T) registered;
+        watch(file);
+        return file;
+    }
+
+    /**
+     * Loads every YAML file in a folder in parallel and registers it like {@link #createYML(String, String...)}.
+     * Files are parsed on a pool sized to the CPU cores and the call returns once all of them are loaded.
+     * Files that are already registered are reused. The total time and the slowest files are always logged,
+     * the load time of every file is logged while debugging is enabled
+     *
+     * @param path      the folder relative to the plugin's data folder, e.g. {@code kits} or {@code arenas/nether}
+     * @param recursive whether to also load the files in subfolders
+     * @return the loaded files with their keys, in path order
+     */
+    public Map<String, JYML<P>> loadDirectory(String path, boolean recursive) {
+        Path root = plugin.getDataFolder().toPath();
+        Path directory = root.resolve(path);
+        if (!Files.isDirectory(directory)) {
+            return new LinkedHashMap<>();
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = recursive ? Files.walk(directory) : Files.list(directory)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(".yml") && Files.isRegularFile(file))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            JDebug.log(Level.SEVERE, "Failed to list folder: " + directory + ". Error: " + e.getMessage());
+            return new LinkedHashMap<>();
+        }
+
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ThreadFactory factory = Thread.ofPlatform().name("JoltingLib-Loader-", 0).daemon().factory();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, factory);
+        long start = System.nanoTime();
+
+        Map<String, JYML<P>> loaded = new LinkedHashMap<>();
+        Map<String, Double> loadMillis = new ConcurrentHashMap<>();
+        try {
+            Map<Path, Future<JYML<P>>> futures = new LinkedHashMap<>();
+            for (Path file : files) {
+                futures.put(file, executor.submit(() -> load(root, file, loadMillis)));
+            }
+
+            for (Map.Entry<Path, Future<JYML<P>>> entry : futures.entrySet()) {
+                try {
+                    JYML<P> yml = entry.getValue().get();
+                    loaded.put(key(root, entry.getKey()), yml);
+                } catch (ExecutionException e) {
+                    JDebug.log(Level.SEVERE, "Failed to load YAML file: " + entry.getKey() + ". Error: " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String slowest = loadMillis.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(SLOWEST_REPORTED)
+                .map(entry -> String.format(Locale.ROOT, "%s %.2f ms", entry.getKey(), entry.getValue()))
+                .collect(Collectors.joining(", "));
+        JDebug.logAlways(Level.INFO, String.format(Locale.ROOT, "Loaded %d YAML files from %s in %.1f ms on %d threads%s",
+                loaded.size(), path, (System.nanoTime() - start) / 1_000_000.0, threads, slowest.isEmpty() ? "" : ", slowest: " + slowest));
+        return loaded;
+    }
+
+    private JYML<P> load(Path root, Path file, Map<String, Double> loadMillis) {
+        long start = System.nanoTime();
+        Path relative = root.relativize(file);
+        String fileName = relative.getFileName().toString();
+        fileName = fileName.substring(0, fileName.length() - ".yml".length());
+
+        Path parent = relative.getParent();
+        String[] folderPath = parent == null ? new String[0] : new String[parent.getNameCount()];
+        for (int i = 0; i < folderPath.length; i++) {
+            folderPath[i] = parent.getName(i).toString();
+        }
+
+        JYML<P> yml = createYML(fileName, folderPath);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        loadMillis.put(relative.toString(), millis);
+        JDebug.log(Level.INFO, String.format(Locale.ROOT, "Loaded %s in %.2f ms", relative, millis));
+        return yml;
+    }
+
+    private static String key(Path root, Path file) {
+        Path parent = root.relativize(file).getParent();
+        String folder = parent == null ? "" : parent.toString().replace(File.separatorChar, '/');
+        return folder + "/" + file.getFileName();
+    }
+
+    /**
+     * Creates a bounded registry for a folder holding one YAML file per entity, such as players or islands.
+     * Its files are loaded on first access, are not registered in this manager and only the most
+     * recently used ones stay in memory, see {@link JYMLRegistry}
+     *
+     * @param maxResident the maximum amount of files held in memory
+     * @param folderPath  the folder of the files relative to the plugin's data folder
+     * @return the registry
+     */
+    public JYMLRegistry<P> createRegistry(int maxResident, String... folderPath) {
+        JYMLRegistry<P> registry = new JYMLRegistry<>(plugin, maxResident, snapshotCache, folderPath);
+        registries.add(registry);
+        return registry;
     }
 
     /**
@@ -103,6 +314,7 @@ public class JFilesManager<P extends Plugin> {
     public void deleteFile(String key) {
         Object file = filesMap.remove(key);
         if (file instanceof JYML) {
+            watchedFiles.remove(watchPath((JYML<?>) file));
             ((JYML<?>) file).getFile().delete();
         }
     }
@@ -121,6 +333,140 @@ public class JFilesManager<P extends Plugin> {
         return null;
     }
 
+    /**
+     * Writes every pending asynchronous save right away, see {@link JYML#setAsyncSave(long)},
+     * as well as every changed file of the registries created by {@link #createRegistry(int, String...)}.
+     * Call it in {@code onDisable()} so no changes are lost on shutdown
+     */
+    public void flushAll() {
+        for (Object file : filesMap.values()) {
+            if (file instanceof JYML) {
+                ((JYML<?>) file).flush();
+            }
+        }
+        for (JYMLRegistry<P> registry : registries) {
+            registry.flushAll();
+        }
+    }
+
+    /**
+     * Runs every scheduled background write of all plugins and stops the shared writer thread.
+     * Called by JoltingLib when it disables, after {@link #flushAll()}
+     */
+    public static void shutdownWriter() {
+        JFileWriter.shutdown();
+    }
+
+    /**
+     * Starts watching the folders of every registered YAML file, including ones created later.
+     * A single background thread waits for changes, re-reads only the modified files, parses them
+     * off the main thread and copies them into the existing configuration on the main thread, notifying the
+     * {@link JYML.ReloadListener}s of the file with the exact paths that changed.
+     * Writes made by {@link JYML#saveConfig()} itself are recognized and skipped, and a file with
+     * unsaved changes in memory is not reloaded, a warning is logged instead
+     */
+    public synchronized void enableHotReload() {
+        if (watchService != null) {
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            JDebug.log(Level.SEVERE, "Failed to start the file watcher. Error: " + e.getMessage());
+            return;
+        }
+
+        WatchService service = watchService;
+        Thread thread = new Thread(() -> watchLoop(service), "JoltingLib-FileWatcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        for (Object file : filesMap.values()) {
+            if (file instanceof JYML) {
+                watch((JYML<P>) file);
+            }
+        }
+    }
+
+    /**
+     * Stops watching the registered files for changes
+     */
+    public synchronized void disableHotReload() {
+        if (watchService == null) {
+            return;
+        }
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            JDebug.log(Level.WARNING, "Failed to stop the file watcher. Error: " + e.getMessage());
+        }
+        watchService = null;
+        watchedFiles.clear();
+        watchedDirectories.clear();
+    }
+
+    private synchronized void watch(JYML<P> yml) {
+        if (watchService == null) {
+            return;
+        }
+
+        Path path = watchPath(yml);
+        if (watchedFiles.put(path, yml) == null) {
+            yml.watched();
+        }
+        Path directory = path.getParent();
+        if (watchedDirectories.add(directory)) {
+            try {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                watchedDirectories.remove(directory);
+                JDebug.log(Level.SEVERE, "Failed to watch folder: " + directory + ". Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Path watchPath(JYML<?> yml) {
+        return yml.getFile().toPath().toAbsolutePath().normalize();
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Set<JYML<P>> changed = new LinkedHashSet<>();
+
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            watchedFiles.forEach((path, yml) -> {
+                                if (path.getParent().equals(directory)) {
+                                    changed.add(yml);
+                                }
+                            });
+                            continue;
+                        }
+
+                        JYML<P> yml = watchedFiles.get(directory.resolve((Path) event.context()));
+                        if (yml != null) {
+                            changed.add(yml);
+                        }
+                    }
+                    key.reset();
+                    key = service.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                for (JYML<P> yml : changed) {
+                    yml.hotReload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watcher was stopped
+        }
+    }
+
     /**
      * Retrieves all registered files
      *
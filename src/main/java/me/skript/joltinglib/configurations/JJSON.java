@@ -0,0 +1,24 @@
+package me.skript.joltinglib.configurations;
+
+import org.bukkit.plugin.Plugin;
+
+/**
+ * A configuration file stored as JSON, with the same section API as {@link JYML}.
+ * Parses and saves several times faster than YAML, for data files that are not edited by hand.
+ * Comments are not stored
+ *
+ * @param <P> the plugin owning the file
+ */
+public class JJSON<P extends Plugin> extends JYML<P> {
+
+    /**
+     * Constructs a new JJSON instance
+     *
+     * @param plugin the plugin instance using this JSON file
+     * @param fileName the name of the JSON file (without extension)
+     * @param folderPath the folder path relative to the plugin's data folder
+     */
+    protected JJSON(P plugin, String fileName, String... folderPath) {
+        super(plugin, JFileFormat.JSON, false, fileName, folderPath);
+    }
+}
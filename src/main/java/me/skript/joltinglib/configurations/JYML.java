@@ -1,20 +1,64 @@
 package me.skript.joltinglib.configurations;
 
 import me.skript.joltinglib.utilities.JDebug;
+import me.skript.joltinglib.utilities.JIOGuard;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 public class JYML<P extends Plugin> {
 
+    private static final long UNKNOWN_HASH = Long.MIN_VALUE; // never produced by JFileWriter#hash
+
     protected final P plugin;
     protected final File file;
+    protected final JFileFormat format;
     protected final FileConfiguration config;
+    private final boolean snapshotCache;
+    private final AtomicReference<PendingSave> pendingSave = new AtomicReference<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final Object saveLock = new Object();
+    private volatile long saveDebounceMillis;
+    private final List<ReloadListener> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile long diskHash;
+    private long savedHash = UNKNOWN_HASH; // guarded by pendingSave
+    private volatile long cleanHash = UNKNOWN_HASH; // the serialized in-memory state when it last matched the file
+    private volatile boolean dirty;
+    private final List<JConfigBinding<?>> bindings = new CopyOnWriteArrayList<>();
+
+    /**
+     * A serialized state waiting to be written, with its snapshot if the snapshot cache is enabled
+     *
+     * @param data     the file content
+     * @param snapshot the snapshot, its header is filled in once the file is written; null if there is none
+     */
+    private record PendingSave(byte[] data, byte[] snapshot) {}
+
+    /**
+     * Notified after {@link #reloadConfig()} or a hot reload changed the configuration, see
+     * {@link JFilesManager#enableHotReload()}. Hot reloads always notify on the main thread
+     */
+    @FunctionalInterface
+    public interface ReloadListener {
+        /**
+         * @param changedPaths every value path that was added, removed or changed
+         */
+        void onReload(Set<String> changedPaths);
+    }
 
     /**
      * Constructs a new JYML instance
@@ -24,12 +68,45 @@ public class JYML<P extends Plugin> {
      * @param folderPath the folder path relative to the plugin's data folder
      */
     protected JYML(P plugin, String fileName, String... folderPath) {
+        this(plugin, false, fileName, folderPath);
+    }
+
+    /**
+     * Constructs a new JYML instance, optionally loading it from a parsed snapshot.
+     * The snapshot is a compact binary copy of the parsed file stored next to it as
+     * {@code <name>.yml.snapshot}. It is only used while the size, modification time and content
+     * hash of the YAML file still match, otherwise the YAML is parsed and the snapshot rewritten.
+     * Every save through {@link #saveConfig()} rewrites the snapshot too
+     *
+     * @param plugin the plugin instance using this YAML file
+     * @param snapshotCache whether to load from and keep a parsed snapshot
+     * @param fileName the name of the YAML file (without extension)
+     * @param folderPath the folder path relative to the plugin's data folder
+     */
+    protected JYML(P plugin, boolean snapshotCache, String fileName, String... folderPath) {
+        this(plugin, JFileFormat.YAML, snapshotCache, fileName, folderPath);
+    }
+
+    /**
+     * Constructs a new configuration file stored in the given format, see {@link JJSON} and {@link JDAT}.
+     * The snapshot cache only applies to YAML, the other formats are fast to parse already
+     *
+     * @param plugin the plugin instance using this file
+     * @param format the storage format of the file
+     * @param snapshotCache whether to load from and keep a parsed snapshot
+     * @param fileName the name of the file (without extension)
+     * @param folderPath the folder path relative to the plugin's data folder
+     */
+    protected JYML(P plugin, JFileFormat format, boolean snapshotCache, String fileName, String... folderPath) {
         this.plugin = plugin;
+        this.format = format;
         String folder = String.join("/", folderPath);
-        this.file = folder.isEmpty() ? new File(plugin.getDataFolder(), fileName + ".yml")
-                : new File(plugin.getDataFolder() + "/" + folder, fileName + ".yml");
+        String name = fileName + "." + format.getExtension();
+        this.file = folder.isEmpty() ? new File(plugin.getDataFolder(), name)
+                : new File(plugin.getDataFolder() + "/" + folder, name);
+        this.snapshotCache = snapshotCache && format == JFileFormat.YAML;
         setupFile(fileName);
-        this.config = YamlConfiguration.loadConfiguration(file);
+        this.config = load();
     }
 
     /**
@@ -41,6 +118,38 @@ public class JYML<P extends Plugin> {
         return config;
     }
 
+    /**
+     * Binds the configuration to a record or interface type, see {@link JConfigBinding}.
+     * The returned binding keeps an immutable snapshot that is rebuilt whenever the file is reloaded,
+     * missing and invalid values are logged right away
+     *
+     * @param type the record or interface to bind to
+     * @param <T>  the bound type
+     * @return the binding holding the current snapshot
+     * @throws IllegalArgumentException If the type cannot be bound
+     */
+    public <T> JConfigBinding<T> bind(Class<T> type) {
+        JConfigBinding<T> binding = new JConfigBinding<>(this, type);
+        bindings.add(binding);
+        return binding;
+    }
+
+    /**
+     * Registers a listener notified whenever a hot reload changes the configuration
+     *
+     * @param listener the listener to add
+     */
+    public void addReloadListener(ReloadListener listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeReloadListener(ReloadListener listener) {
+        reloadListeners.remove(listener);
+    }
+
     /**
      * Retrieves the file object for this YAML file
      *
@@ -51,25 +160,425 @@ public class JYML<P extends Plugin> {
     }
 
     /**
-     * Saves changes made to the configuration back to the YAML file
+     * @return the storage format of the file
+     */
+    public JFileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Saves changes made to the configuration back to the YAML file.
+     * The configuration is serialized and compared with the last loaded or saved content,
+     * if nothing changed the file is not written
      */
     public void saveConfig() {
+        if (!prepareSave()) {
+            return;
+        }
+
+        long debounce = saveDebounceMillis;
+        if (debounce > 0) {
+            if (saveScheduled.compareAndSet(false, true)) {
+                JFileWriter.schedule(() -> {
+                    saveScheduled.set(false);
+                    writePending(true);
+                }, debounce);
+            }
+            return;
+        }
+
+        long guard = JIOGuard.begin("JYML.saveConfig");
+        try {
+            writePending(false);
+        } finally {
+            JIOGuard.end("JYML.saveConfig", guard);
+        }
+    }
+
+    /**
+     * Marks the configuration as changed, so a {@link JYMLRegistry} writes it back before evicting it
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * @return true if the configuration was marked dirty or has a save that was not written yet
+     */
+    public boolean isDirty() {
+        return dirty || pendingSave.get() != null;
+    }
+
+    /**
+     * Serializes the current state as the next one to write, without writing it
+     *
+     * @return false if the state equals the last loaded, saved or pending one, so nothing has to be written
+     */
+    boolean prepareSave() {
+        dirty = false;
+        byte[] data;
         try {
-            config.save(file);
+            data = format.encode(config);
         } catch (IOException e) {
             JDebug.log(Level.SEVERE, "Failed to save YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            return false;
+        }
+        long hash = JFileWriter.hash(data);
+        cleanHash = hash;
+        synchronized (pendingSave) {
+            if (hash == savedHash && file.exists()) {
+                return false;
+            }
+            savedHash = hash;
+            pendingSave.set(new PendingSave(data, encodeSnapshot()));
+            return true;
+        }
+    }
+
+    /**
+     * Encodes the snapshot of the current state on the calling thread, where the configuration may be read
+     *
+     * @return the snapshot, or null if the snapshot cache is disabled or the values cannot be snapshotted
+     */
+    private byte[] encodeSnapshot() {
+        if (!snapshotCache) {
+            return null;
+        }
+        try {
+            return JConfigSnapshot.encode(config, 0, 0, 0);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the content last read from disk as the saved state
+     */
+    private void loaded(long hash) {
+        diskHash = hash;
+        synchronized (pendingSave) {
+            savedHash = hash;
+        }
+    }
+
+    /**
+     * Makes {@link #saveConfig()} return right away. The configuration is still serialized on the
+     * calling thread, but written on a background thread once the debounce window passes, so a
+     * burst of saves within the window results in a single write of the latest state.
+     * Call {@link #flush()} or {@link JFilesManager#flushAll()} before the plugin disables
+     *
+     * @param debounceMillis how long to wait for more saves before writing, 0 saves synchronously again
+     */
+    public void setAsyncSave(long debounceMillis) {
+        this.saveDebounceMillis = Math.max(0, debounceMillis);
+        if (saveDebounceMillis == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes a pending asynchronous save right away on the calling thread, synced to disk
+     */
+    public void flush() {
+        writePending(true);
+    }
+
+    /**
+     * Writes the latest serialized state, if any. Writes are serialized so an older
+     * state can never overwrite a newer one
+     *
+     * @param sync whether to sync the file to disk, skipped for synchronous saves on the calling thread
+     */
+    private void writePending(boolean sync) {
+        synchronized (saveLock) {
+            PendingSave pending = pendingSave.getAndSet(null);
+            if (pending == null) {
+                return;
+            }
+
+            byte[] data = pending.data();
+            long hash = JFileWriter.hash(data);
+            try {
+                diskHash = hash; // so the file watcher skips our own write
+                JFileWriter.writeAtomically(file.toPath(), data, sync);
+            } catch (IOException e) {
+                synchronized (pendingSave) {
+                    savedHash = UNKNOWN_HASH; // the next save writes even if nothing changed
+                    pendingSave.compareAndSet(null, pending); // retried by the next save or flush
+                }
+                JDebug.log(Level.SEVERE, "Failed to save YAML file: " + file.getName() + ". Error: " + e.getMessage());
+                return;
+            }
+
+            if (snapshotCache) {
+                refreshSnapshot(pending.snapshot(), data.length, hash);
+            }
+        }
+    }
+
+    /**
+     * Replaces the snapshot after the file was written, so the next start still loads from it.
+     * Without a snapshot of the new state the old one is deleted, it no longer matches the file
+     */
+    private void refreshSnapshot(byte[] snapshot, long size, long hash) {
+        Path path = snapshotPath();
+        try {
+            if (snapshot == null) {
+                Files.deleteIfExists(path);
+                return;
+            }
+            JConfigSnapshot.stamp(snapshot, size, Files.getLastModifiedTime(file.toPath()).toMillis(), hash);
+        } catch (IOException e) {
+            JDebug.log(Level.WARNING, "Failed to update snapshot of YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            return;
         }
+
+        JFileWriter.schedule(() -> {
+            try {
+                JFileWriter.writeAtomically(path, snapshot, false); // checked against the file on load
+            } catch (IOException e) {
+                JDebug.log(Level.WARNING, "Failed to write snapshot of YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            }
+        }, 0);
+    }
+
+    private Path snapshotPath() {
+        return file.toPath().resolveSibling(file.getName() + ".snapshot");
     }
 
     /**
      * Reloads the YAML file from disk, updating the configuration object
+     * and notifying the {@link ReloadListener}s if anything changed
      */
     public void reloadConfig() {
+        long guard = JIOGuard.begin("JYML.reloadConfig");
         try {
-            config.load(file);
+            byte[] data = Files.readAllBytes(file.toPath());
+            Map<String, Object> previous = flatten(config);
+            format.decode(data, config);
+            loaded(JFileWriter.hash(data));
+            markClean();
+            changed(previous, flatten(config));
         } catch (Exception e) {
             JDebug.log(Level.SEVERE, "Failed to reload YAML file: " + file.getName() + ". Error: " + e.getMessage());
+        } finally {
+            JIOGuard.end("JYML.reloadConfig", guard);
+        }
+    }
+
+    /**
+     * Parses the file and remembers its content hash. With the snapshot cache, the parsed snapshot
+     * is loaded instead if it still matches the file, otherwise a new one is written in the background
+     */
+    private FileConfiguration load() {
+        Path source = file.toPath();
+        byte[] data;
+        long mtime;
+        try {
+            data = Files.readAllBytes(source);
+            mtime = snapshotCache ? Files.getLastModifiedTime(source).toMillis() : 0;
+        } catch (IOException e) {
+            if (format == JFileFormat.YAML) {
+                return YamlConfiguration.loadConfiguration(file);
+            }
+            JDebug.log(Level.SEVERE, "Failed to load YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            return new YamlConfiguration();
+        }
+
+        long hash = JFileWriter.hash(data);
+        loaded(hash);
+        Path snapshot = snapshotPath();
+        if (snapshotCache) {
+            YamlConfiguration cached = JConfigSnapshot.read(snapshot, data.length, mtime, hash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        YamlConfiguration parsed = new YamlConfiguration();
+        try {
+            format.decode(data, parsed);
+        } catch (InvalidConfigurationException e) {
+            JDebug.log(Level.SEVERE, "Failed to load YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            return parsed;
+        }
+        if (!snapshotCache) {
+            return parsed;
+        }
+
+        try {
+            byte[] encoded = JConfigSnapshot.encode(parsed, data.length, mtime, hash);
+            JFileWriter.schedule(() -> {
+                try {
+                    JFileWriter.writeAtomically(snapshot, encoded, false); // checked against the file on load
+                } catch (IOException e) {
+                    JDebug.log(Level.WARNING, "Failed to write snapshot of YAML file: " + file.getName() + ". Error: " + e.getMessage());
+                }
+            }, 0);
+        } catch (IOException e) {
+            JDebug.log(Level.INFO, "YAML file " + file.getName() + " cannot be snapshotted: " + e.getMessage());
+        }
+        return parsed;
+    }
+
+    /**
+     * Called when the file starts being watched. Records the current in-memory state as matching the
+     * file unless that is known already, loads and saves keep it up to date from then on
+     */
+    void watched() {
+        if (cleanHash == UNKNOWN_HASH) {
+            markClean();
+        }
+    }
+
+    /**
+     * Records the current in-memory state as matching the file, so a hot reload can tell
+     * whether {@code set()} calls were made since
+     */
+    private void markClean() {
+        try {
+            cleanHash = JFileWriter.hash(format.encode(config));
+        } catch (IOException e) {
+            cleanHash = UNKNOWN_HASH;
+        }
+    }
+
+    /**
+     * @return true if the configuration was changed in memory since it was last loaded or saved
+     */
+    private boolean hasLocalChanges() {
+        if (isDirty()) {
+            return true;
         }
+        long clean = cleanHash;
+        if (clean == UNKNOWN_HASH) {
+            return true;
+        }
+        try {
+            return JFileWriter.hash(format.encode(config)) != clean;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Re-reads the file after the file watcher saw it change. Unchanged content is skipped,
+     * otherwise the file is parsed on the calling thread and copied into the configuration on the main thread
+     */
+    void hotReload() {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            JDebug.log(Level.SEVERE, "Failed to read YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            return;
+        }
+
+        long expectedDiskHash = diskHash;
+        long hash = JFileWriter.hash(data);
+        if (hash == expectedDiskHash) {
+            return;
+        }
+
+        YamlConfiguration parsed = new YamlConfiguration();
+        try {
+            format.decode(data, parsed);
+        } catch (InvalidConfigurationException e) {
+            JDebug.log(Level.SEVERE, "Failed to hot reload YAML file: " + file.getName() + ". Error: " + e.getMessage());
+            return;
+        }
+
+        Map<String, Object> values = flatten(parsed);
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> swap(parsed, values, hash, expectedDiskHash));
+        }
+    }
+
+    /**
+     * Copies a hot reloaded file into the configuration, keeping the same object so references held
+     * by callers stay valid. Skipped if this plugin saved the file since it was read, or if the
+     * configuration has changes that were not saved yet, those win and overwrite the file on the next save
+     */
+    private void swap(FileConfiguration parsed, Map<String, Object> values, long hash, long expectedDiskHash) {
+        Map<String, Object> previous;
+        synchronized (saveLock) {
+            if (diskHash != expectedDiskHash) {
+                return; // saved over by this plugin after the file was read
+            }
+            if (hasLocalChanges()) {
+                diskHash = hash; // warn once per edit
+                JDebug.logAlways(Level.WARNING, "Not hot reloading " + file.getName()
+                        + ", it has unsaved changes in memory that will overwrite the edited file on the next save");
+                return;
+            }
+
+            previous = flatten(config);
+            copy(parsed, config);
+            config.options().setHeader(parsed.options().getHeader());
+            config.options().setFooter(parsed.options().getFooter());
+            loaded(hash);
+            markClean();
+        }
+        changed(previous, values);
+    }
+
+    /**
+     * Replaces the values and comments of a section with the ones of another section
+     */
+    private static void copy(ConfigurationSection from, ConfigurationSection to) {
+        for (String key : to.getKeys(false)) {
+            to.set(key, null);
+        }
+        for (String key : from.getKeys(false)) {
+            Object value = from.get(key);
+            if (value instanceof ConfigurationSection section) {
+                copy(section, to.createSection(key));
+            } else {
+                to.set(key, value);
+            }
+            to.setComments(key, from.getComments(key));
+            to.setInlineComments(key, from.getInlineComments(key));
+        }
+    }
+
+    /**
+     * Rebuilds the bindings and notifies the listeners if any value differs between the two states
+     */
+    private void changed(Map<String, Object> previous, Map<String, Object> values) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String path : previous.keySet()) {
+            if (!values.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            bindings.forEach(JConfigBinding::rebuild);
+            Set<String> paths = Collections.unmodifiableSet(changed);
+            for (ReloadListener listener : reloadListeners) {
+                listener.onReload(paths);
+            }
+        }
+    }
+
+    /**
+     * @return every value of the configuration keyed by its full path, sections left out
+     */
+    private static Map<String, Object> flatten(ConfigurationSection section) {
+        Map<String, Object> values = new HashMap<>();
+        section.getValues(true).forEach((path, value) -> {
+            if (!(value instanceof ConfigurationSection)) {
+                values.put(path, value);
+            }
+        });
+        return values;
     }
 
     /**
@@ -80,7 +589,7 @@ public class JYML<P extends Plugin> {
     protected void setupFile(String fileName) {
         if (!file.exists()) {
             file.getParentFile().mkdirs();
-            InputStream defaultFile = plugin.getResource(fileName + ".yml");
+            InputStream defaultFile = plugin.getResource(fileName + "." + format.getExtension());
 
             if (defaultFile != null) {
                 try {
@@ -0,0 +1,222 @@
+package me.skript.joltinglib.configurations;
+
+import me.skript.joltinglib.utilities.JIOGuard;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe set of YAML files in one folder, for data stored as one file per
+ * entity such as a player or an island. Files are loaded on first access and only the most
+ * recently used ones stay in memory. When the limit is reached the least recently used file
+ * is evicted; if it changed it is serialized right away and written back on the file writer
+ * thread first. A file requested again while its write-back runs is handed out again instead
+ * of being re-read from disk, and a file is only ever loaded by one thread at a time. Mark files as changed with {@link JYML#markDirty()} or save them
+ * with {@link JYML#saveConfig()}
+ *
+ * @param <P> the plugin owning the files
+ */
+public class JYMLRegistry<P extends Plugin> {
+
+    private final P plugin;
+    private final String[] folderPath;
+    private final int maxResident;
+    private final boolean snapshotCache;
+    private final LinkedHashMap<String, Resident<P>> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, JYML<P>> evicting = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<JYML<P>>> loading = new HashMap<>(); // guarded by resident
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+    private long residentBytes;
+
+    /**
+     * Statistics of a registry
+     *
+     * @param resident      the amount of files held in memory
+     * @param residentBytes the size on disk of the files held in memory, a rough measure of their memory use
+     * @param hits          how many lookups found the file in memory
+     * @param loads         how many lookups had to load the file from disk
+     * @param evictions     how many files were dropped from memory
+     * @param writeBacks    how many evicted files had to be written back first
+     */
+    public record Stats(int resident, long residentBytes, long hits, long loads, long evictions, long writeBacks) {}
+
+    private record Resident<P extends Plugin>(JYML<P> yml, long bytes) {}
+
+    JYMLRegistry(P plugin, int maxResident, boolean snapshotCache, String... folderPath) {
+        this.plugin = plugin;
+        this.folderPath = folderPath.clone();
+        this.maxResident = Math.max(1, maxResident);
+        this.snapshotCache = snapshotCache;
+    }
+
+    /**
+     * Gets a file, loading or creating it on first access. Loading reads the disk,
+     * so prefer calling it off the main thread, e.g. while a player logs in.
+     * Threads asking for a file that is being loaded wait for that load instead of reading it again
+     *
+     * @param fileName the name of the file (without extension)
+     * @return the file
+     */
+    public JYML<P> get(String fileName) {
+        CompletableFuture<JYML<P>> load;
+        boolean loader = false;
+        synchronized (resident) {
+            Resident<P> entry = resident.get(fileName);
+            if (entry != null) {
+                hits.increment();
+                return entry.yml();
+            }
+
+            JYML<P> writingBack = evicting.get(fileName);
+            if (writingBack != null) {
+                hits.increment();
+                insert(fileName, writingBack);
+                return writingBack;
+            }
+
+            load = loading.get(fileName);
+            if (load == null) {
+                load = new CompletableFuture<>();
+                loading.put(fileName, load);
+                loader = true;
+            } else {
+                hits.increment();
+            }
+        }
+
+        long guard = JIOGuard.begin("JYMLRegistry.get");
+        try {
+            return loader ? load(fileName, load) : load.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        } finally {
+            JIOGuard.end("JYMLRegistry.get", guard);
+        }
+    }
+
+    /**
+     * Reads a file and publishes it to the threads waiting for it. No other copy of the file exists
+     * while its placeholder is in {@link #loading}, so the loaded state is always the newest one
+     */
+    private JYML<P> load(String fileName, CompletableFuture<JYML<P>> load) {
+        JYML<P> loaded;
+        try {
+            loaded = new JYML<>(plugin, snapshotCache, fileName, folderPath);
+        } catch (RuntimeException | Error e) {
+            synchronized (resident) {
+                loading.remove(fileName, load);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+        loads.increment();
+
+        synchronized (resident) {
+            loading.remove(fileName, load);
+            insert(fileName, loaded);
+        }
+        load.complete(loaded);
+        return loaded;
+    }
+
+    /**
+     * @param fileName the name of the file (without extension)
+     * @return the file if it is held in memory, without loading it
+     */
+    public JYML<P> getIfResident(String fileName) {
+        synchronized (resident) {
+            Resident<P> entry = resident.get(fileName);
+            return entry == null ? null : entry.yml();
+        }
+    }
+
+    /**
+     * Writes back a file if it changed and drops it from memory
+     *
+     * @param fileName the name of the file (without extension)
+     */
+    public void evict(String fileName) {
+        synchronized (resident) {
+            Resident<P> entry = resident.remove(fileName);
+            if (entry != null) {
+                dropped(fileName, entry);
+            }
+        }
+    }
+
+    /**
+     * Writes every changed file held in memory on the calling thread, keeping them loaded.
+     * Called by {@link JFilesManager#flushAll()}
+     */
+    public void flushAll() {
+        List<JYML<P>> files;
+        synchronized (resident) {
+            files = new ArrayList<>(resident.size() + evicting.size());
+            for (Resident<P> entry : resident.values()) {
+                files.add(entry.yml());
+            }
+        }
+        files.addAll(evicting.values());
+
+        for (JYML<P> yml : files) {
+            if (yml.isDirty()) {
+                yml.prepareSave();
+            }
+            yml.flush();
+        }
+    }
+
+    /**
+     * @return the current statistics of the registry
+     */
+    public Stats getStats() {
+        synchronized (resident) {
+            return new Stats(resident.size(), residentBytes, hits.sum(), loads.sum(), evictions.sum(), writeBacks.sum());
+        }
+    }
+
+    /**
+     * Adds a file as the most recently used one, evicting the least recently used files over the limit
+     */
+    private void insert(String fileName, JYML<P> yml) {
+        Resident<P> entry = new Resident<>(yml, yml.getFile().length());
+        resident.put(fileName, entry);
+        residentBytes += entry.bytes();
+
+        Iterator<Map.Entry<String, Resident<P>>> eldest = resident.entrySet().iterator();
+        while (resident.size() > maxResident && eldest.hasNext()) {
+            Map.Entry<String, Resident<P>> next = eldest.next();
+            eldest.remove();
+            dropped(next.getKey(), next.getValue());
+        }
+    }
+
+    private void dropped(String fileName, Resident<P> entry) {
+        residentBytes -= entry.bytes();
+        evictions.increment();
+
+        JYML<P> yml = entry.yml();
+        if (!yml.isDirty()) {
+            return;
+        }
+
+        // serialize now under the registry lock, then write it in the background
+        yml.prepareSave();
+        if (!yml.isDirty()) {
+            return; // marked dirty but unchanged since it was last written
+        }
+        writeBacks.increment();
+        evicting.put(fileName, yml);
+        JFileWriter.schedule(() -> {
+            yml.flush();
+            evicting.remove(fileName, yml);
+        }, 0);
+    }
+}
@@ -0,0 +1,24 @@
+package me.skript.joltinglib.sql;
+
+/**
+ * The outcome of a bulk load through {@link JSQL#insertAll} or {@link JSQL#upsertAll}
+ *
+ * @param rows         the amount of rows sent to the database
+ * @param statements   the amount of multi-row statements executed
+ * @param affectedRows the affected row count reported by the driver, MySQL counts updated rows twice
+ * @param nanos        the time the whole load took, including waiting for the writer
+ */
+public record JBulkResult(int rows, int statements, long affectedRows, long nanos) {
+
+    /**
+     * @return the throughput of the load in rows per second
+     */
+    public double rowsPerSecond() {
+        return nanos == 0 ? 0 : rows * 1_000_000_000D / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows in %d statements, %.1f ms (%.0f rows/s)", rows, statements, nanos / 1_000_000D, rowsPerSecond());
+    }
+}
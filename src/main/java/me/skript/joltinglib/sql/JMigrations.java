@@ -0,0 +1,273 @@
+package me.skript.joltinglib.sql;
+
+import me.skript.joltinglib.utilities.JDebug;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Ordered registry of schema migrations for a {@link JSQL} database.
+ * Applied migrations are recorded in the {@code jsql_migrations} ledger together with a checksum,
+ * so startup only reads the ledger once, skips everything already applied and refuses to
+ * continue if an applied migration was edited afterwards. Every pending migration runs in
+ * its own transaction. Note that MySQL and MariaDB commit DDL statements implicitly
+ */
+public class JMigrations {
+
+    private static final String LEDGER = "jsql_migrations";
+    private static final Pattern RESOURCE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final JSQL sql;
+    private final SortedMap<Integer, JMigration> migrations = new TreeMap<>();
+
+    /**
+     * A single schema change
+     *
+     * @param version     the unique version, migrations run in ascending order
+     * @param description a short description stored in the ledger
+     * @param checksum    the checksum of the migration source, compared against the ledger
+     * @param work        the changes to apply
+     */
+    public record JMigration(int version, String description, String checksum, JSQL.TransactionWork<?> work) {}
+
+    JMigrations(JSQL sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Registers a migration made of SQL statements
+     *
+     * @param version     the unique version, migrations run in ascending order
+     * @param description a short description stored in the ledger
+     * @param statements  the statements to execute in order
+     * @return this registry
+     */
+    public JMigrations add(int version, String description, String... statements) {
+        List<String> sqlStatements = List.of(statements);
+        return add(new JMigration(version, description, checksum(String.join(";\n", sqlStatements)), connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sqlStatement : sqlStatements) {
+                    statement.execute(sqlStatement);
+                }
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Registers a migration written in code. Only the version and description are checksummed,
+     * so changing the code of an applied migration is not detected
+     *
+     * @param version     the unique version, migrations run in ascending order
+     * @param description a short description stored in the ledger
+     * @param work        the changes to apply
+     * @return this registry
+     */
+    public JMigrations add(int version, String description, JSQL.TransactionWork<?> work) {
+        return add(new JMigration(version, description, checksum(version + ":" + description), work));
+    }
+
+    /**
+     * Registers a migration
+     *
+     * @param migration the migration to register
+     * @return this registry
+     */
+    public synchronized JMigrations add(JMigration migration) {
+        if (migrations.putIfAbsent(migration.version(), migration) != null) {
+            throw new IllegalArgumentException("Duplicate migration version: " + migration.version());
+        }
+        return this;
+    }
+
+    /**
+     * Registers every {@code V<version>__<description>.sql} file inside a folder of the plugin jar,
+     * e.g. {@code migrations/V1__create_users.sql}. Statements are split on semicolons outside
+     * of quotes and comments, so bodies containing semicolons (e.g. triggers) are not supported
+     *
+     * @param plugin the plugin whose jar contains the files
+     * @param folder the folder inside the jar
+     * @return this registry
+     * @throws IOException If the jar or a file cannot be read
+     */
+    public JMigrations loadResources(Plugin plugin, String folder) throws IOException {
+        String prefix = folder.endsWith("/") ? folder : folder + "/";
+        Path source;
+        try {
+            source = Path.of(plugin.getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot locate the jar of " + plugin.getName(), e);
+        }
+
+        List<String> names = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            Path root = source.resolve(prefix);
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> files = Files.list(root)) {
+                    files.forEach(file -> names.add(prefix + file.getFileName()));
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(source.toFile())) {
+                for (JarEntry entry : Collections.list(jar.entries())) {
+                    String name = entry.getName();
+                    if (!entry.isDirectory() && name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+
+        for (String name : names) {
+            Matcher matcher = RESOURCE_NAME.matcher(name.substring(prefix.length()));
+            if (!matcher.matches()) {
+                continue;
+            }
+
+            String script;
+            try (InputStream stream = plugin.getResource(name)) {
+                if (stream == null) {
+                    throw new IOException("Missing migration resource: " + name);
+                }
+                script = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            add(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), split(script).toArray(new String[0]));
+        }
+        return this;
+    }
+
+    /**
+     * Applies every pending migration in version order, each in its own transaction
+     *
+     * @return the amount of migrations applied
+     * @throws SQLException If the ledger cannot be read, an applied migration was changed or a migration fails
+     */
+    public synchronized int migrate() throws SQLException {
+        Map<Integer, String> applied = readLedger();
+
+        List<JMigration> pending = new ArrayList<>();
+        for (JMigration migration : migrations.values()) {
+            String checksum = applied.get(migration.version());
+            if (checksum == null) {
+                pending.add(migration);
+            } else if (!checksum.equals(migration.checksum())) {
+                throw new SQLException("Migration V" + migration.version() + " (" + migration.description()
+                        + ") was changed after it was applied");
+            }
+        }
+
+        for (JMigration migration : pending) {
+            sql.transaction(connection -> {
+                migration.work().run(connection);
+                try (var insert = connection.prepareStatement("INSERT INTO " + LEDGER
+                        + " (version, description, checksum, applied_at) VALUES (?, ?, ?, ?)")) {
+                    insert.setInt(1, migration.version());
+                    insert.setString(2, migration.description());
+                    insert.setString(3, migration.checksum());
+                    insert.setLong(4, System.currentTimeMillis());
+                    insert.executeUpdate();
+                }
+                return null;
+            });
+            JDebug.log(Level.INFO, "[JSQL] Applied migration V" + migration.version() + " (" + migration.description() + ")");
+        }
+        return pending.size();
+    }
+
+    /**
+     * Reads the whole ledger in one query, creating it when it does not exist yet
+     *
+     * @return the checksums of the applied migrations, keyed by version
+     * @throws SQLException If the ledger cannot be read or created
+     */
+    private Map<Integer, String> readLedger() throws SQLException {
+        try {
+            return queryLedger();
+        } catch (SQLException missing) {
+            sql.executeUpdate("CREATE TABLE IF NOT EXISTS " + LEDGER + " (version INT PRIMARY KEY, "
+                    + "description VARCHAR(255) NOT NULL, checksum VARCHAR(64) NOT NULL, applied_at BIGINT NOT NULL)");
+            return queryLedger(); // fails again unless the ledger was really missing
+        }
+    }
+
+    private Map<Integer, String> queryLedger() throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        sql.forEach("SELECT version, checksum FROM " + LEDGER,
+                rs -> Map.entry(rs.getInt(1), rs.getString(2)),
+                entry -> applied.put(entry.getKey(), entry.getValue()));
+        return applied;
+    }
+
+    /**
+     * Splits a script into statements on semicolons outside of quotes and comments
+     *
+     * @param script the SQL script
+     * @return the non-empty statements
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            char next = i + 1 < script.length() ? script.charAt(i + 1) : 0;
+
+            if (quote != 0) {
+                current.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '-' && next == '-') {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? script.length() : end;
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? script.length() : end + 1;
+            } else if (c == ';') {
+                addStatement(statements, current);
+            } else {
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+
+    private static String checksum(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.strip().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
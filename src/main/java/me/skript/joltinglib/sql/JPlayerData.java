@@ -0,0 +1,185 @@
+package me.skript.joltinglib.sql;
+
+import java.util.*;
+
+/**
+ * The row of one player held in memory by a {@link JPlayerStore}.
+ * Reads never touch the database, every {@code set} marks its column as dirty
+ * so only changed columns are written on the next flush
+ */
+public class JPlayerData {
+
+    private final UUID uuid;
+    private final Map<String, Object> values;
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private volatile boolean online = true;
+    private boolean claimed;
+    private boolean unsaved;
+    private long quitSession;
+
+    JPlayerData(UUID uuid, Map<String, Object> values) {
+        this(uuid, values, false);
+    }
+
+    /**
+     * @param unsaved true for a new player without a row yet, the row is written once the player joins
+     */
+    JPlayerData(UUID uuid, Map<String, Object> values, boolean unsaved) {
+        this.uuid = uuid;
+        this.values = values;
+        this.unsaved = unsaved;
+    }
+
+    /**
+     * @return the UUID of the player this data belongs to
+     */
+    public UUID getUniqueId() {
+        return uuid;
+    }
+
+    /**
+     * @param column the column to read
+     * @return the value of the column, or null if it has none
+     */
+    public synchronized Object get(String column) {
+        return values.get(column);
+    }
+
+    public String getString(String column) {
+        Object value = get(column);
+        return value == null ? null : value.toString();
+    }
+
+    public int getInt(String column) {
+        return get(column) instanceof Number number ? number.intValue() : 0;
+    }
+
+    public long getLong(String column) {
+        return get(column) instanceof Number number ? number.longValue() : 0L;
+    }
+
+    public double getDouble(String column) {
+        return get(column) instanceof Number number ? number.doubleValue() : 0D;
+    }
+
+    public boolean getBoolean(String column) {
+        Object value = get(column);
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        return value instanceof Number number && number.intValue() != 0;
+    }
+
+    /**
+     * Changes a column and marks it to be written on the next flush
+     *
+     * @param column the column to change
+     * @param value  the new value
+     * @throws IllegalArgumentException If the column is not in the defaults of the store, which includes the key column
+     */
+    public synchronized void set(String column, Object value) {
+        if (!values.containsKey(column)) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        if (!Objects.equals(values.put(column, value), value)) {
+            dirty.add(column);
+        }
+    }
+
+    /**
+     * Adds to a numeric column and marks it to be written on the next flush
+     *
+     * @param column the column to change
+     * @param amount the amount to add
+     */
+    public synchronized void add(String column, long amount) {
+        set(column, getLong(column) + amount);
+    }
+
+    /**
+     * @return true if some columns changed since the last flush
+     */
+    public synchronized boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Takes the changed columns and their current values, clearing the dirty set
+     *
+     * @return the changed column values in a stable order, empty if nothing changed
+     */
+    synchronized Map<String, Object> takeDirty() {
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (String column : dirty) {
+            changed.put(column, values.get(column));
+        }
+        dirty.clear();
+        return changed;
+    }
+
+    /**
+     * Marks columns as dirty again after a failed flush
+     *
+     * @param columns the columns that could not be written
+     */
+    synchronized void restoreDirty(Collection<String> columns) {
+        dirty.addAll(columns);
+    }
+
+    /**
+     * Called once the player joined, a new player gets their whole row written on the next flush
+     */
+    synchronized void claim() {
+        if (!online) {
+            rejoin();
+        }
+        claimed = true;
+        if (unsaved) {
+            unsaved = false;
+            dirty.addAll(values.keySet());
+        }
+    }
+
+    /**
+     * @return true while the player is on the server
+     */
+    synchronized boolean isClaimed() {
+        return claimed;
+    }
+
+    /**
+     * @return true for a new player that never joined, so no row exists for them yet
+     */
+    synchronized boolean isUnsaved() {
+        return unsaved;
+    }
+
+    synchronized long quit() {
+        online = false;
+        claimed = false;
+        return ++quitSession;
+    }
+
+    synchronized void rejoin() {
+        online = true;
+        quitSession++;
+    }
+
+    /**
+     * @return the current session, see {@link #isPending(long)}
+     */
+    synchronized long getSession() {
+        return quitSession;
+    }
+
+    /**
+     * @return true if the player logged in but did not join yet, and did not log in again since the session
+     */
+    synchronized boolean isPending(long session) {
+        return online && !claimed && quitSession == session;
+    }
+
+    synchronized boolean isSameQuit(long session) {
+        return !online && quitSession == session;
+    }
+}
@@ -0,0 +1,304 @@
+package me.skript.joltinglib.sql;
+
+import me.skript.joltinglib.utilities.JDebug;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Keeps the database row of every online player in memory.
+ * Rows are loaded during {@link AsyncPlayerPreLoginEvent}, so the main thread never waits on
+ * the database, served from memory for the whole session and only changed columns are written
+ * back, batched in one transaction, on an interval and when the player quits. After quitting,
+ * the row stays cached for a grace period so quick reconnects skip the load entirely.
+ * Rows of logins that end up denied, or that never join, are released again; the row of a new
+ * player is only written once they joined
+ */
+public class JPlayerStore implements Listener {
+
+    private static final long CLAIM_TIMEOUT_TICKS = 20L * 60; // login to join never takes this long
+
+    private final Plugin plugin;
+    private final JSQL sql;
+    private final String table;
+    private final String keyColumn;
+    private final Map<String, Object> defaults;
+    private final long graceTicks;
+    private final Map<UUID, JPlayerData> players = new ConcurrentHashMap<>();
+    private final BukkitTask flushTask;
+    private final Object flushLock = new Object();
+
+    /**
+     * Creates the store and registers its listeners
+     *
+     * @param plugin             the plugin owning the store
+     * @param sql                the database holding the table
+     * @param table              the table with one row per player
+     * @param keyColumn          the primary key column holding the player UUID as text
+     * @param defaults           every column of the table except the key column, with the value used for new players
+     * @param flushIntervalTicks how often changed rows are written, in ticks
+     * @param graceTicks         how long a row stays cached after its player quits, in ticks
+     * @throws IllegalArgumentException If the defaults contain the key column
+     */
+    public JPlayerStore(Plugin plugin, JSQL sql, String table, String keyColumn, Map<String, Object> defaults,
+                        long flushIntervalTicks, long graceTicks) {
+        this.plugin = plugin;
+        this.sql = sql;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        for (String column : defaults.keySet()) {
+            if (column.equalsIgnoreCase(keyColumn)) {
+                throw new IllegalArgumentException("The defaults must not contain the key column " + keyColumn);
+            }
+        }
+        this.defaults = new LinkedHashMap<>(defaults);
+        this.graceTicks = graceTicks;
+        this.flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flushQuietly, flushIntervalTicks, flushIntervalTicks);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Gets the cached data of a player. Data is available from the moment the player
+     * logs in until the grace period after they quit ends
+     *
+     * @param uuid the UUID of the player
+     * @return the data of the player, or null if it is not loaded
+     */
+    public JPlayerData get(UUID uuid) {
+        return players.get(uuid);
+    }
+
+    /**
+     * @return the amount of players currently held in memory
+     */
+    public int size() {
+        return players.size();
+    }
+
+    /**
+     * Loads the data of a player, reusing the cached row when present.
+     * Blocks on the database, so only call it off the main thread
+     *
+     * @param uuid the UUID of the player
+     * @return the loaded data
+     * @throws SQLException If the row cannot be read
+     */
+    public JPlayerData load(UUID uuid) throws SQLException {
+        // atomic with evict, so a row being evicted is either kept for the rejoin or loaded again
+        JPlayerData cached = players.computeIfPresent(uuid, (key, data) -> {
+            data.rejoin();
+            return data;
+        });
+        if (cached != null) {
+            return cached;
+        }
+
+        List<JPlayerData> rows = sql.executeQuery("SELECT * FROM " + sql.getDialect().quote(table)
+                + " WHERE " + sql.getDialect().quote(keyColumn) + " = ?", rs -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String column : defaults.keySet()) {
+                values.put(column, rs.getObject(column));
+            }
+            return new JPlayerData(uuid, values);
+        }, uuid.toString());
+
+        JPlayerData data;
+        if (rows.isEmpty()) {
+            data = new JPlayerData(uuid, new LinkedHashMap<>(defaults), true);
+        } else {
+            data = rows.get(0);
+        }
+
+        JPlayerData existing = players.putIfAbsent(uuid, data);
+        return existing != null ? existing : data;
+    }
+
+    /**
+     * Writes the changed columns of every cached player, grouped into JDBC batches
+     * and committed as one transaction
+     *
+     * @throws SQLException If the rows cannot be written, they stay dirty in that case
+     */
+    public void flush() throws SQLException {
+        flush(players.values());
+    }
+
+    /**
+     * Stops the flush task, unregisters the listeners and writes every changed row.
+     * Call it in {@code onDisable()} before closing the database
+     *
+     * @throws SQLException If the final flush fails
+     */
+    public void close() throws SQLException {
+        flushTask.cancel();
+        HandlerList.unregisterAll(this);
+        flush();
+    }
+
+    @EventHandler(priority = EventPriority.NORMAL)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        try {
+            JPlayerData data = load(event.getUniqueId());
+            long session = data.getSession();
+            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> expire(data, session), CLAIM_TIMEOUT_TICKS);
+        } catch (SQLException e) {
+            JDebug.logAlways(Level.SEVERE, "[JSQL] Failed to load data of " + event.getName() + ". Error: " + e.getMessage());
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, Component.text("Failed to load your data, please try again."));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginResult(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            release(event.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            release(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        JPlayerData data = players.get(event.getPlayer().getUniqueId());
+        if (data != null) {
+            data.claim();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        JPlayerData data = players.get(uuid);
+        if (data == null) {
+            return;
+        }
+
+        long session = data.quit();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> flushQuietly(List.of(data)));
+        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> evict(data, session), graceTicks);
+    }
+
+    /**
+     * Releases the row of a login that was denied, as if the player quit right away.
+     * The row of a new player is dropped without ever being written
+     */
+    private void release(UUID uuid) {
+        JPlayerData data = players.get(uuid);
+        if (data == null || data.isClaimed()) {
+            return; // not loaded, or the player is already online
+        }
+
+        long session = data.quit();
+        if (data.isUnsaved()) {
+            players.computeIfPresent(uuid, (key, current) -> current == data && current.isSameQuit(session) ? null : current);
+            return;
+        }
+        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> evict(data, session), graceTicks);
+    }
+
+    /**
+     * Releases a row whose player never joined, e.g. because the connection dropped after the login
+     */
+    private void expire(JPlayerData data, long session) {
+        if (players.get(data.getUniqueId()) == data && data.isPending(session)) {
+            release(data.getUniqueId());
+        }
+    }
+
+    private void evict(JPlayerData data, long session) {
+        if (!data.isSameQuit(session)) {
+            return; // the player came back during the grace period
+        }
+
+        if (data.isDirty()) {
+            flushQuietly(List.of(data));
+        }
+        players.computeIfPresent(data.getUniqueId(), (key, current) ->
+                current == data && current.isSameQuit(session) && !current.isDirty() ? null : current);
+    }
+
+    private void flush(Collection<JPlayerData> rows) throws SQLException {
+        synchronized (flushLock) {
+            flushLocked(rows);
+        }
+    }
+
+    /**
+     * Writes the changed columns of the given rows. Only one flush runs at a time, otherwise
+     * an older value of a column could be committed after a newer one
+     */
+    private void flushLocked(Collection<JPlayerData> rows) throws SQLException {
+        Map<JPlayerData, Map<String, Object>> changes = new LinkedHashMap<>();
+        Map<String, List<Object[]>> batches = new LinkedHashMap<>();
+
+        for (JPlayerData data : rows) {
+            if (data.isUnsaved()) {
+                continue; // written once the player joins
+            }
+            Map<String, Object> changed = data.takeDirty();
+            if (changed.isEmpty()) {
+                continue;
+            }
+            changes.put(data, changed);
+
+            List<String> columns = new ArrayList<>();
+            columns.add(keyColumn);
+            columns.addAll(changed.keySet());
+
+            Object[] params = new Object[columns.size()];
+            params[0] = data.getUniqueId().toString();
+            int i = 1;
+            for (Object value : changed.values()) {
+                params[i++] = value;
+            }
+
+            String upsert = sql.getDialect().upsert(table, columns, List.of(keyColumn));
+            batches.computeIfAbsent(upsert, key -> new ArrayList<>()).add(params);
+        }
+
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        try {
+            sql.executeBatches(batches);
+        } catch (SQLException exception) {
+            changes.forEach((data, changed) -> data.restoreDirty(changed.keySet()));
+            throw exception;
+        }
+    }
+
+    private void flushQuietly() {
+        flushQuietly(players.values());
+    }
+
+    private void flushQuietly(Collection<JPlayerData> rows) {
+        try {
+            flush(rows);
+        } catch (SQLException e) {
+            JDebug.logAlways(Level.SEVERE, "[JSQL] Failed to save player data to " + table + ". Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package me.skript.joltinglib.sql;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read-through cache of query results for {@link JSQL}, keyed by SQL text and parameters.
+ * Entries expire after a TTL, the least recently used ones are evicted past the max size
+ * and every entry reading a table is dropped once an update writes to that table
+ */
+class JQueryCache {
+
+    private static final Pattern READ_TABLES = Pattern.compile("\\b(?:FROM|JOIN)\\s+[`\"\\[]?([\\w.]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITE_TABLE = Pattern.compile(
+            "^\\s*(?:INSERT\\s+(?:OR\\s+\\w+\\s+|IGNORE\\s+)?INTO|REPLACE\\s+INTO|UPDATE(?:\\s+OR\\s+\\w+)?|DELETE\\s+FROM|MERGE\\s+INTO)\\s+[`\"\\[]?([\\w.]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Entry(List<?> rows, Set<String> tables, long expiresAt) {}
+
+    /**
+     * Cache key built from the SQL text, the bound parameters and the mapper type,
+     * so two call sites mapping the same query differently never share results
+     */
+    record Key(String sql, Object[] params, Class<?> mapperType) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key
+                    && sql.equals(key.sql)
+                    && mapperType == key.mapperType
+                    && Arrays.deepEquals(params, key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * sql.hashCode() + mapperType.hashCode()) + Arrays.deepHashCode(params);
+        }
+    }
+
+    /**
+     * @param maxSize  the maximum amount of cached results
+     * @param ttlMillis how long in milliseconds a result stays valid
+     */
+    JQueryCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > JQueryCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key the cache key
+     * @return the cached rows, or null if missing or expired
+     */
+    synchronized List<?> get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            hits.increment();
+            return entry.rows();
+        }
+
+        if (entry != null) {
+            entries.remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return the current invalidation generation, to be passed back to {@link #put}
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Stores a result unless an invalidation happened since the query started,
+     * in which case the rows might already be stale
+     *
+     * @param key        the cache key
+     * @param rows       the rows to cache
+     * @param generation the generation read before running the query
+     * @return an unmodifiable view of the rows
+     */
+    synchronized <T> List<T> put(Key key, List<T> rows, long generation) {
+        List<T> cached = Collections.unmodifiableList(rows);
+        if (this.generation.get() == generation) {
+            entries.put(key, new Entry(cached, readTables(key.sql()), System.nanoTime() + ttlNanos));
+        }
+        return cached;
+    }
+
+    /**
+     * Drops every entry reading the table written by the given SQL update.
+     * Clears the whole cache if the written table cannot be determined
+     *
+     * @param sql the SQL update that was executed
+     */
+    void invalidate(String sql) {
+        Matcher matcher = WRITE_TABLE.matcher(sql);
+        if (matcher.find()) {
+            invalidateTable(matcher.group(1).toLowerCase(Locale.ROOT));
+        } else {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Drops every entry reading the given table
+     *
+     * @param table the lower case table name
+     */
+    synchronized void invalidateTable(String table) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> entry.tables().isEmpty() || entry.tables().contains(table));
+    }
+
+    /**
+     * Drops every entry
+     */
+    synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static Set<String> readTables(String sql) {
+        Set<String> tables = new HashSet<>();
+        Matcher matcher = READ_TABLES.matcher(sql);
+        while (matcher.find()) {
+            tables.add(matcher.group(1).toLowerCase(Locale.ROOT));
+        }
+        return tables;
+    }
+}
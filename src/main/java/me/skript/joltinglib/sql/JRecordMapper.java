@@ -0,0 +1,255 @@
+package me.skript.joltinglib.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps rows straight into Java records or POJOs without a hand written {@link JSQL.RowMapper}.
+ * Columns are matched to record components or fields by name, ignoring case and underscores,
+ * so {@code player_name} fills {@code playerName}. The mapping is compiled into
+ * {@link MethodHandle}s once per type and result set shape, and column indices are resolved
+ * on the first row only. Components without a matching column get null, 0 or false
+ *
+ * @param <T> the type rows are mapped to
+ */
+public final class JRecordMapper<T> implements JSQL.RowMapper<T> {
+
+    private static final Map<Shape, Compiled<?>> COMPILED = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private volatile Bound<T> bound;
+
+    private record Shape(Class<?> type, List<String> columns) {}
+
+    private record Bound<T>(ResultSet rs, Compiled<T> compiled) {}
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    private JRecordMapper(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Creates a mapper for the given record or POJO type. POJOs need a no-argument
+     * constructor, their non-static, non-final fields are filled
+     *
+     * @param type the type rows are mapped to
+     * @param <T>  the type rows are mapped to
+     * @return a mapper usable with any JSQL query method
+     */
+    public static <T> JRecordMapper<T> of(Class<T> type) {
+        return new JRecordMapper<>(type);
+    }
+
+    /**
+     * @return the type rows are mapped to
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public T map(ResultSet rs) throws SQLException {
+        Bound<T> current = bound;
+        if (current == null || current.rs() != rs) {
+            current = new Bound<>(rs, compile(rs));
+            bound = current;
+        }
+        return current.compiled().map(rs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Compiled<T> compile(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        List<String> columns = new ArrayList<>(meta.getColumnCount());
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.add(normalize(meta.getColumnLabel(i)));
+        }
+
+        Shape shape = new Shape(type, columns);
+        Compiled<?> compiled = COMPILED.get(shape);
+        if (compiled == null) {
+            compiled = type.isRecord() ? compileRecord(columns) : compilePojo(columns);
+            COMPILED.putIfAbsent(shape, compiled);
+        }
+        return (Compiled<T>) compiled;
+    }
+
+    private Compiled<T> compileRecord(List<String> columns) throws SQLException {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] types = new Class<?>[components.length];
+        String[] names = new String[components.length];
+        for (int i = 0; i < components.length; i++) {
+            types[i] = components[i].getType();
+            names[i] = components[i].getName();
+        }
+
+        try {
+            MethodHandle constructor = lookup()
+                    .findConstructor(type, MethodType.methodType(void.class, types))
+                    .asSpreader(Object[].class, types.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            return new Compiled<>(type, constructor, null, columnIndices(names, columns), readers(types), types);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Cannot access the canonical constructor of " + type.getName(), e);
+        }
+    }
+
+    private Compiled<T> compilePojo(List<String> columns) throws SQLException {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+        }
+
+        Class<?>[] types = new Class<?>[fields.size()];
+        String[] names = new String[fields.size()];
+        MethodHandle[] setters = new MethodHandle[fields.size()];
+        try {
+            MethodHandles.Lookup lookup = lookup();
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                types[i] = field.getType();
+                names[i] = field.getName();
+                setters[i] = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+                        .unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            }
+            MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            return new Compiled<>(type, constructor, setters, columnIndices(names, columns), readers(types), types);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Cannot access the no-argument constructor or fields of " + type.getName(), e);
+        }
+    }
+
+    private MethodHandles.Lookup lookup() throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    private static int[] columnIndices(String[] names, List<String> columns) {
+        int[] indices = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indices[i] = columns.indexOf(normalize(names[i])) + 1;
+        }
+        return indices;
+    }
+
+    private static ColumnReader[] readers(Class<?>[] types) {
+        ColumnReader[] readers = new ColumnReader[types.length];
+        for (int i = 0; i < types.length; i++) {
+            readers[i] = reader(types[i]);
+        }
+        return readers;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader reader(Class<?> type) {
+        if (type == int.class) return ResultSet::getInt;
+        if (type == long.class) return ResultSet::getLong;
+        if (type == double.class) return ResultSet::getDouble;
+        if (type == float.class) return ResultSet::getFloat;
+        if (type == boolean.class) return ResultSet::getBoolean;
+        if (type == short.class) return ResultSet::getShort;
+        if (type == byte.class) return ResultSet::getByte;
+        if (type == String.class) return ResultSet::getString;
+        if (type == byte[].class) return ResultSet::getBytes;
+        if (type == Integer.class) return nullable(ResultSet::getInt);
+        if (type == Long.class) return nullable(ResultSet::getLong);
+        if (type == Double.class) return nullable(ResultSet::getDouble);
+        if (type == Float.class) return nullable(ResultSet::getFloat);
+        if (type == Boolean.class) return nullable(ResultSet::getBoolean);
+        if (type == BigDecimal.class) return ResultSet::getBigDecimal;
+        if (type == UUID.class) {
+            return (rs, index) -> {
+                String value = rs.getString(index);
+                return value == null ? null : UUID.fromString(value);
+            };
+        }
+        if (type == Instant.class) {
+            return (rs, index) -> {
+                Timestamp value = rs.getTimestamp(index);
+                return value == null ? null : value.toInstant();
+            };
+        }
+        if (type.isEnum()) {
+            return (rs, index) -> {
+                String value = rs.getString(index);
+                return value == null ? null : Enum.valueOf((Class) type, value);
+            };
+        }
+        return (rs, index) -> rs.getObject(index, type);
+    }
+
+    private static ColumnReader nullable(ColumnReader reader) {
+        return (rs, index) -> {
+            Object value = reader.read(rs, index);
+            return rs.wasNull() ? null : value;
+        };
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0D;
+        if (type == float.class) return 0F;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return '\0';
+        return 0;
+    }
+
+    /**
+     * The mapping of one type for one result set shape. Records use the constructor handle
+     * with all values, POJOs use the no-argument constructor followed by the field setters
+     */
+    private record Compiled<T>(Class<T> type, MethodHandle constructor, MethodHandle[] setters,
+                               int[] indices, ColumnReader[] readers, Class<?>[] types) {
+
+        T map(ResultSet rs) throws SQLException {
+            Object[] values = new Object[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                values[i] = indices[i] == 0 ? defaultValue(types[i]) : readers[i].read(rs, indices[i]);
+            }
+
+            try {
+                if (setters == null) {
+                    return type.cast((Object) constructor.invokeExact(values));
+                }
+
+                Object instance = (Object) constructor.invokeExact();
+                for (int i = 0; i < setters.length; i++) {
+                    if (indices[i] != 0) {
+                        setters[i].invokeExact(instance, values[i]);
+                    }
+                }
+                return type.cast(instance);
+            } catch (Throwable throwable) {
+                throw new SQLException("Failed to map row to " + type.getName(), throwable);
+            }
+        }
+    }
+}
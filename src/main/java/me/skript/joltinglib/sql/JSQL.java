@@ -1,14 +1,52 @@
 package me.skript.joltinglib.sql;
 
+import me.skript.joltinglib.utilities.JIOGuard;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JSQL {
 
     private Connection connection;
+    private final JSQLDialect dialect;
     private final String jdbcURL;
+    private final String user;
+    private final String password;
+    private final int readerCount;
+    private final BlockingQueue<Connection> readers;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("JSQL-", 0).factory());
+    private final Semaphore asyncPermits;
+    private volatile Plugin callbackPlugin;
+    private final Map<Connection, JStatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private volatile int statementCacheSize = 32;
+    private volatile JWriteBehind writeBehind;
+    private volatile int fetchSize = 500;
+    private volatile JQueryCache queryCache;
+    private final JSQLMetrics metrics = new JSQLMetrics();
+    private volatile int transactionRetries = 5;
+    private volatile long lastWriteNanos = System.nanoTime();
+    private volatile JSQLMaintenance maintenance;
+    private int transactionDepth;
+    private final JMigrations migrations = new JMigrations(this);
 
     /**
      * Initializes a new JSQL instance with a given SQLite database path
@@ -17,8 +55,46 @@ public class JSQL {
      * @throws SQLException If a connection cannot be established
      */
     public JSQL(String path) throws SQLException {
-        this.jdbcURL = "jdbc:sqlite:" + path;
-        this.connection = DriverManager.getConnection(jdbcURL);
+        this(path, 0);
+    }
+
+    /**
+     * Initializes a new pooled JSQL instance with a given SQLite database path.
+     * The database is switched to WAL mode so the read-only connections can run
+     * queries in parallel while the single writer connection serializes all updates
+     *
+     * @param path    The file path to the SQLite database
+     * @param readers The amount of read-only connections to keep open, 0 disables pooling
+     * @throws SQLException If a connection cannot be established
+     */
+    public JSQL(String path, int readers) throws SQLException {
+        this(JSQLDialect.SQLITE, "jdbc:sqlite:" + path, null, null, readers);
+    }
+
+    /**
+     * Initializes a new JSQL instance for any supported backend, e.g. a MySQL server shared by
+     * several servers or an in-memory H2 database from {@link JSQLDialect#h2MemoryURL(String)}
+     *
+     * @param dialect  The backend the URL points to
+     * @param jdbcURL  The JDBC URL of the database
+     * @param user     The user to log in with, or null if the URL needs none
+     * @param password The password of the user
+     * @param readers  The amount of read-only connections to keep open, 0 disables pooling
+     * @throws SQLException If a connection cannot be established
+     */
+    public JSQL(JSQLDialect dialect, String jdbcURL, String user, String password, int readers) throws SQLException {
+        this.dialect = dialect;
+        this.jdbcURL = dialect.prepareURL(jdbcURL);
+        this.user = user;
+        this.password = password;
+        this.readerCount = Math.max(0, readers);
+        this.readers = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+        this.asyncPermits = new Semaphore(readerCount + 1);
+        this.connection = openWriter();
+
+        for (int i = 0; i < readerCount; i++) {
+            this.readers.add(openReader());
+        }
     }
 
     @FunctionalInterface
@@ -26,6 +102,16 @@ public class JSQL {
         T map(ResultSet rs) throws SQLException;
     }
 
+    @FunctionalInterface
+    public interface SQLTask<T> {
+        T call() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
     // Opens the connection on first use, Reopens it if it ever closes
     /**
      * Gets the database connection. Reopens the connection if it was closed.
@@ -35,25 +121,240 @@ public class JSQL {
      */
     public synchronized Connection getConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
-            this.connection = DriverManager.getConnection(jdbcURL);
+            if (connection != null) {
+                invalidateStatements(connection);
+            }
+            this.connection = openWriter();
         }
         return connection;
     }
 
+    /**
+     * Sets how many prepared statements are cached per connection, 0 disables the cache.
+     * Should be called before the instance is used, existing caches are dropped
+     *
+     * @param size the maximum amount of cached statements per connection
+     */
+    public void setStatementCacheSize(int size) {
+        this.statementCacheSize = Math.max(0, size);
+        statementCaches.values().forEach(JStatementCache::close);
+        statementCaches.clear();
+    }
+
+    /**
+     * @return how many times a cached prepared statement was reused
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return how many times a statement had to be prepared from scratch
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    /**
+     * @return the per-statement call counts, row counts and latencies of this instance
+     */
+    public JSQLMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return true if this instance keeps a pool of read-only connections
+     */
+    public boolean isPooled() {
+        return readerCount > 0;
+    }
+
     /**
      * Closes the database connection if it is open.
+     * Waits for in-flight async tasks to finish and writes all queued updates first,
+     * new async tasks are rejected afterwards.
      * Recommended to call this in your plugin's {@code onDisable()} method.
      *
-     * @throws SQLException If an error occurs while closing the connection.
+     * @throws SQLException If an error occurs while closing the connection, or some queued updates could not be written.
      */
     public void closeConnection() throws SQLException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("[JSQL] Timed out waiting for async tasks to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        JSQLMaintenance scheduled = maintenance;
+        if (scheduled != null) {
+            scheduled.close();
+        }
+
+        SQLException queueFailure = null;
+        JWriteBehind queued = writeBehind;
+        if (queued != null) {
+            try {
+                queued.close();
+            } catch (SQLException e) {
+                queueFailure = e; // thrown once everything is closed
+            }
+        }
+
+        List<Connection> pooled = new ArrayList<>();
+        readers.drainTo(pooled);
+        for (Connection reader : pooled) {
+            closeQuietly(reader);
+        }
+
+        statementCaches.values().forEach(JStatementCache::close);
+        statementCaches.clear();
+
         if(connection != null && !connection.isClosed()){
+            closeQuietly(connection);
+        }
+
+        if (queueFailure != null) {
+            throw queueFailure;
+        }
+    }
+
+    /**
+     * @return the backend this instance is connected to
+     */
+    public JSQLDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Opens the writer connection, tuned by the dialect
+     *
+     * @return a new writer connection
+     * @throws SQLException If the connection cannot be established
+     */
+    private Connection openWriter() throws SQLException {
+        Connection writer = connect();
+        dialect.initWriter(writer, isPooled());
+        return writer;
+    }
+
+    /**
+     * Opens a read-only connection for the pool
+     *
+     * @return a new reader connection
+     * @throws SQLException If the connection cannot be established
+     */
+    private Connection openReader() throws SQLException {
+        Connection reader = connect();
+        dialect.initReader(reader);
+        return reader;
+    }
+
+    /**
+     * Opens an extra connection outside of the pool, the caller has to close it
+     *
+     * @return a new connection to the database
+     * @throws SQLException If the connection cannot be established
+     */
+    Connection openConnection() throws SQLException {
+        return connect();
+    }
+
+    /**
+     * @return the lock serializing every use of the writer connection
+     */
+    ReentrantLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the last update or transaction
+     */
+    long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    private Connection connect() throws SQLException {
+        return user == null ? DriverManager.getConnection(jdbcURL) : DriverManager.getConnection(jdbcURL, user, password);
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            System.out.println("[JSQL] Error closing connection");
+        }
+    }
+
+    /**
+     * Gets the statement cache of a connection, creating it on first use
+     *
+     * @param connection the connection owned by the calling thread
+     * @return the statement cache of that connection
+     */
+    private JStatementCache statements(Connection connection) {
+        return statementCaches.computeIfAbsent(connection,
+                key -> new JStatementCache(key, statementCacheSize, statementCacheHits, statementCacheMisses));
+    }
+
+    private void invalidateStatements(Connection connection) {
+        JStatementCache cache = statementCaches.remove(connection);
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Borrows a reader from the pool, waiting until one is free.
+     * Falls back to the writer connection when pooling is disabled, or when the calling thread is
+     * inside a transaction so its queries see the transaction's own uncommitted writes
+     *
+     * @return a connection that can be used for queries
+     * @throws SQLException If the connection cannot be (re)established
+     */
+    private Connection acquireReader() throws SQLException {
+        if (!isPooled() || writeLock.isHeldByCurrentThread()) {
+            writeLock.lock();
             try {
-                connection.close();
-            } catch (SQLException ignored) {
-                System.out.println("[JSQL] Error closing connection");
+                return getConnection();
+            } catch (SQLException exception) {
+                writeLock.unlock();
+                throw exception;
             }
         }
+
+        Connection reader;
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+
+        try {
+            if (reader.isClosed()) {
+                invalidateStatements(reader);
+                reader = openReader();
+            }
+        } catch (SQLException exception) {
+            readers.offer(reader);
+            throw exception;
+        }
+        return reader;
+    }
+
+    /**
+     * Returns a borrowed reader back to the pool, or releases the writer connection if that was borrowed
+     *
+     * @param reader the connection returned by {@link #acquireReader()}
+     */
+    private void releaseReader(Connection reader) {
+        if (isPooled() && reader != connection) {
+            readers.offer(reader);
+        } else {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -65,12 +366,180 @@ public class JSQL {
      * @throws SQLException If an error occurs during execution.
      */
     public int executeUpdate(String sql, Object... params) throws SQLException {
-        try (PreparedStatement ps = getConnection().prepareStatement(sql)) {
+        long guard = JIOGuard.begin("JSQL.executeUpdate");
+        try {
+            long start = System.nanoTime();
+            writeLock.lock();
+            try {
+                JStatementCache statements = statements(getConnection());
+                PreparedStatement ps = statements.prepare(sql);
+                try {
+                    for (int i = 0; i < params.length; i++) {
+                        ps.setObject(i + 1, params[i]);
+                    }
+                    int rows = ps.executeUpdate();
+                    lastWriteNanos = System.nanoTime();
+                    invalidateCachedQueries(sql);
+                    metrics.record(sql, System.nanoTime() - start, rows);
+                    return rows;
+                } finally {
+                    statements.release(sql, ps);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            JIOGuard.end("JSQL.executeUpdate", guard);
+        }
+    }
+
+    /**
+     * Inserts a row, or updates the existing row with the same key, using the
+     * upsert syntax of the backend
+     *
+     * @param table      The table to write to.
+     * @param keyColumns The columns of the primary or unique key identifying the row.
+     * @param values     The column values of the row, keyed by column name.
+     * @return The number of rows affected.
+     * @throws SQLException If an error occurs during execution.
+     */
+    public int upsert(String table, List<String> keyColumns, Map<String, ?> values) throws SQLException {
+        List<String> columns = new ArrayList<>(values.keySet());
+        return executeUpdate(dialect.upsert(table, columns, keyColumns), values.values().toArray());
+    }
+
+    /**
+     * Inserts many rows at once, see {@link #upsertAll(String, List, List, List, boolean)}
+     *
+     * @param table          The table to write to.
+     * @param columns        The columns written, in the order of the row values.
+     * @param rows           The column values of every row.
+     * @param rebuildIndexes Whether to drop non-unique indexes before the load and recreate them after it.
+     * @return The row count, statement count and throughput of the load.
+     * @throws SQLException If any row fails, nothing is committed in that case.
+     */
+    public JBulkResult insertAll(String table, List<String> columns, List<Object[]> rows, boolean rebuildIndexes) throws SQLException {
+        long guard = JIOGuard.begin("JSQL.insertAll");
+        try {
+            return bulkWrite(table, columns, rows, rebuildIndexes, count -> dialect.insert(table, columns, count));
+        } finally {
+            JIOGuard.end("JSQL.insertAll", guard);
+        }
+    }
+
+    /**
+     * Inserts or updates many rows at once, see {@link #upsertAll(String, List, List, List, boolean)}.
+     * Every row must have the same columns
+     *
+     * @param table      The table to write to.
+     * @param keyColumns The columns of the primary or unique key identifying the rows.
+     * @param rows       The column values of every row, keyed by column name.
+     * @return The row count, statement count and throughput of the load.
+     * @throws SQLException If any row fails, nothing is committed in that case.
+     */
+    public JBulkResult upsertAll(String table, List<String> keyColumns, List<? extends Map<String, ?>> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return new JBulkResult(0, 0, 0, 0);
+        }
+
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (Map<String, ?> row : rows) {
+            if (row.size() != columns.size() || !row.keySet().containsAll(columns)) {
+                throw new IllegalArgumentException("Every row must have the columns " + columns);
+            }
+            Object[] params = new Object[columns.size()];
             for (int i = 0; i < params.length; i++) {
-                ps.setObject(i + 1, params[i]);
+                params[i] = row.get(columns.get(i));
             }
-            return ps.executeUpdate();
+            values.add(params);
         }
+        return upsertAll(table, keyColumns, columns, values, false);
+    }
+
+    /**
+     * Inserts or updates many rows at once. Rows are packed into multi-row VALUES statements,
+     * as many per statement as the parameter limit of the backend allows, and everything is
+     * written in a single transaction. This is orders of magnitude faster than one
+     * {@link #executeUpdate(String, Object...)} per row, which pays a round trip and statement
+     * execution for every row. For large loads into a table with many indexes, dropping the
+     * non-unique ones and recreating them afterwards is faster than updating them row by row,
+     * currently only SQLite supports this
+     *
+     * @param table          The table to write to.
+     * @param keyColumns     The columns of the primary or unique key identifying the rows.
+     * @param columns        The columns written including the key columns, in the order of the row values.
+     * @param rows           The column values of every row.
+     * @param rebuildIndexes Whether to drop non-unique indexes before the load and recreate them after it.
+     * @return The row count, statement count and throughput of the load.
+     * @throws SQLException If any row fails, nothing is committed in that case.
+     */
+    public JBulkResult upsertAll(String table, List<String> keyColumns, List<String> columns, List<Object[]> rows,
+                                 boolean rebuildIndexes) throws SQLException {
+        long guard = JIOGuard.begin("JSQL.upsertAll");
+        try {
+            return bulkWrite(table, columns, rows, rebuildIndexes, count -> dialect.upsert(table, columns, keyColumns, count));
+        } finally {
+            JIOGuard.end("JSQL.upsertAll", guard);
+        }
+    }
+
+    private JBulkResult bulkWrite(String table, List<String> columns, List<Object[]> rows, boolean rebuildIndexes,
+                                  IntFunction<String> statementFor) throws SQLException {
+        long start = System.nanoTime();
+        if (rows.isEmpty()) {
+            return new JBulkResult(0, 0, 0, 0);
+        }
+        for (Object[] row : rows) {
+            if (row.length != columns.size()) {
+                throw new IllegalArgumentException("Every row must have " + columns.size() + " values");
+            }
+        }
+
+        int perStatement = dialect.rowsPerStatement(columns.size());
+        String fullSql = statementFor.apply(perStatement);
+        int statementCount = (rows.size() + perStatement - 1) / perStatement;
+
+        long affected = runTransaction(connection -> {
+            List<String> indexes = rebuildIndexes ? dialect.dropSecondaryIndexes(connection, table) : List.of();
+            JStatementCache statements = statements(connection);
+            long count = 0;
+
+            for (int from = 0; from < rows.size(); from += perStatement) {
+                long statementStart = System.nanoTime();
+                int size = Math.min(perStatement, rows.size() - from);
+                if (size == perStatement) {
+                    PreparedStatement ps = statements.prepare(fullSql);
+                    try {
+                        count += bindRows(ps, rows, from, size);
+                    } finally {
+                        statements.release(fullSql, ps);
+                    }
+                } else {
+                    try (PreparedStatement ps = connection.prepareStatement(statementFor.apply(size))) {
+                        count += bindRows(ps, rows, from, size);
+                    }
+                }
+                metrics.record(fullSql, System.nanoTime() - statementStart, size);
+            }
+
+            JSQLDialect.execute(connection, indexes.toArray(new String[0]));
+            return count;
+        });
+
+        lastWriteNanos = System.nanoTime();
+        invalidateCachedQueries(fullSql);
+        return new JBulkResult(rows.size(), statementCount, affected, System.nanoTime() - start);
+    }
+
+    private static int bindRows(PreparedStatement ps, List<Object[]> rows, int from, int size) throws SQLException {
+        int index = 1;
+        for (int row = from; row < from + size; row++) {
+            for (Object value : rows.get(row)) {
+                ps.setObject(index++, value);
+            }
+        }
+        return ps.executeUpdate();
     }
 
     /**
@@ -84,74 +553,711 @@ public class JSQL {
      * @throws SQLException If an error occurs during execution.
      */
     public <T> List<T> executeQuery(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
-        try (PreparedStatement ps = getConnection().prepareStatement(sql)) {
+        long guard = JIOGuard.begin("JSQL.executeQuery");
+        try {
+            long start = System.nanoTime();
+            Connection reader = acquireReader();
+            try {
+                JStatementCache statements = statements(reader);
+                PreparedStatement ps = statements.prepare(sql);
+                try {
+                    for (int i = 0; i < params.length; i++) {
+                        ps.setObject(i + 1, params[i]);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        List<T> results = new ArrayList<>();
+                        while (rs.next()) {
+                            results.add(mapper.map(rs));
+                        }
+                        metrics.record(sql, System.nanoTime() - start, results.size());
+                        return results;
+                    }
+                } finally {
+                    statements.release(sql, ps);
+                }
+            } finally {
+                releaseReader(reader);
+            }
+        } finally {
+            JIOGuard.end("JSQL.executeQuery", guard);
+        }
+    }
+
+    /**
+     * Executes an SQL SELECT query and maps each row to a record or POJO by column name,
+     * see {@link JRecordMapper} for the matching rules
+     *
+     * @param sql    The SQL SELECT query to execute.
+     * @param type   The record or POJO class to map rows to.
+     * @param params The parameters to bind to the query.
+     * @param <T>    The type of object to return in the result list.
+     * @return A list of objects mapped from the result set.
+     * @throws SQLException If an error occurs during execution or mapping.
+     */
+    public <T> List<T> executeQuery(String sql, Class<T> type, Object... params) throws SQLException {
+        return executeQuery(sql, JRecordMapper.of(type), params);
+    }
+
+    /**
+     * Enables the read-through cache used by {@link #executeCachedQuery(String, RowMapper, Object...)}.
+     * Results are dropped after the TTL, when the cache is full, or when an update through this
+     * instance writes to a table the cached query reads from
+     *
+     * @param maxSize   the maximum amount of cached results
+     * @param ttlMillis how long in milliseconds a cached result stays valid
+     */
+    public synchronized void enableQueryCache(int maxSize, long ttlMillis) {
+        if (queryCache == null) {
+            this.queryCache = new JQueryCache(maxSize, ttlMillis);
+        }
+    }
+
+    /**
+     * Same as {@link #executeQuery(String, RowMapper, Object...)}, but serves repeated calls with
+     * the same SQL, parameters and mapper type from the query cache. The returned list is
+     * shared between callers and cannot be modified
+     *
+     * @param sql     The SQL SELECT query to execute.
+     * @param mapper  A RowMapper function to convert rows into objects.
+     * @param params  The parameters to bind to the query.
+     * @param <T>     The type of object to return in the result list.
+     * @return an unmodifiable list of objects mapped from the result set.
+     * @throws SQLException If an error occurs during execution.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> executeCachedQuery(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        JQueryCache cache = queryCache;
+        if (cache == null) {
+            return executeQuery(sql, mapper, params);
+        }
+
+        Class<?> mapperType = mapper instanceof JRecordMapper<?> recordMapper ? recordMapper.getType() : mapper.getClass();
+        JQueryCache.Key key = new JQueryCache.Key(sql, params.clone(), mapperType);
+        List<?> cached = cache.get(key);
+        if (cached != null) {
+            return (List<T>) cached;
+        }
+
+        long generation = cache.generation();
+        return cache.put(key, executeQuery(sql, mapper, params), generation);
+    }
+
+    /**
+     * Drops cached query results reading from the given tables, needed after writing to
+     * them through a raw connection. Without any table the whole cache is cleared
+     *
+     * @param tables the names of the tables that changed
+     */
+    public void invalidateQueryCache(String... tables) {
+        JQueryCache cache = queryCache;
+        if (cache == null) {
+            return;
+        }
+
+        if (tables.length == 0) {
+            cache.invalidateAll();
+        }
+        for (String table : tables) {
+            cache.invalidateTable(table.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * @return how many cached queries were served from the cache
+     */
+    public long getQueryCacheHits() {
+        JQueryCache cache = queryCache;
+        return cache == null ? 0 : cache.hits();
+    }
+
+    /**
+     * @return how many cached queries had to run against the database
+     */
+    public long getQueryCacheMisses() {
+        JQueryCache cache = queryCache;
+        return cache == null ? 0 : cache.misses();
+    }
+
+    /**
+     * @return the share of cached queries served from the cache, between 0 and 1
+     */
+    public double getQueryCacheHitRate() {
+        long hits = getQueryCacheHits();
+        long total = hits + getQueryCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private void invalidateCachedQueries(String sql) {
+        JQueryCache cache = queryCache;
+        if (cache == null) {
+            return;
+        }
+
+        if (sql == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(sql);
+        }
+    }
+
+    /**
+     * Writes a consistent copy of the database into the given folder while it stays in use.
+     * SQLite uses {@code VACUUM INTO}; in pooled (WAL) mode on a separate connection that never blocks
+     * the writer, otherwise on the writer connection, so writes wait for the backup. H2 writes a zip file. Other backends have to be backed up by their server
+     *
+     * @param directory the folder to write the backup to
+     * @return the written backup file
+     * @throws SQLException If the backend has no online backup or the backup fails
+     */
+    public Path backup(Path directory) throws SQLException {
+        long guard = JIOGuard.begin("JSQL.backup");
+        try {
+            return JSQLMaintenance.backup(this, directory);
+        } finally {
+            JIOGuard.end("JSQL.backup", guard);
+        }
+    }
+
+    /**
+     * Returns free pages to the file system and runs {@code PRAGMA optimize}.
+     * Pages are freed in small steps that each hold the writer lock only briefly, so live
+     * writes keep flowing. Only has an effect on SQLite databases in incremental auto-vacuum mode
+     *
+     * @throws SQLException If compaction fails
+     */
+    public void compact() throws SQLException {
+        long guard = JIOGuard.begin("JSQL.compact");
+        try {
+            JSQLMaintenance.compact(this);
+        } finally {
+            JIOGuard.end("JSQL.compact", guard);
+        }
+    }
+
+    /**
+     * Schedules backups and compaction on a low priority background thread. Backups are kept
+     * in rotation, compaction runs at most once an hour and only after no write happened for
+     * the given quiet period. SQLite databases are switched to incremental auto-vacuum on the
+     * background thread first; an existing database is rebuilt once for that, during which writes wait
+     *
+     * @param backupDirectory       the folder backups are written to
+     * @param backupIntervalMinutes the time between two backups in minutes
+     * @param keepBackups           the amount of backups kept, older ones are deleted
+     * @param quietSeconds          how long no write must happen before compaction runs, in seconds
+     */
+    public synchronized void enableMaintenance(Path backupDirectory, long backupIntervalMinutes, int keepBackups, long quietSeconds) {
+        if (maintenance == null) {
+            this.maintenance = new JSQLMaintenance(this, backupDirectory, backupIntervalMinutes, keepBackups, quietSeconds);
+        }
+    }
+
+    /**
+     * Sets how many rows streaming queries ask the driver to fetch at once
+     *
+     * @param fetchSize the fetch size hint, 0 lets the driver decide
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(0, fetchSize);
+    }
+
+    /**
+     * Executes an SQL SELECT query and hands each mapped row to the action as it is read,
+     * without collecting the whole result in memory
+     *
+     * @param sql    The SQL SELECT query to execute.
+     * @param mapper A RowMapper function to convert rows into objects.
+     * @param action The action to run for every mapped row.
+     * @param params The parameters to bind to the query.
+     * @param <T>    The type of the mapped rows.
+     * @throws SQLException If an error occurs during execution.
+     */
+    public <T> void forEach(String sql, RowMapper<T> mapper, Consumer<? super T> action, Object... params) throws SQLException {
+        long guard = JIOGuard.begin("JSQL.forEach");
+        try {
+            long start = System.nanoTime();
+            Connection reader = acquireReader();
+            try (PreparedStatement ps = reader.prepareStatement(sql)) {
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    long rows = 0;
+                    while (rs.next()) {
+                        action.accept(mapper.map(rs));
+                        rows++;
+                    }
+                    metrics.record(sql, System.nanoTime() - start, rows);
+                }
+            } finally {
+                releaseReader(reader);
+            }
+        } finally {
+            JIOGuard.end("JSQL.forEach", guard);
+        }
+    }
+
+    /**
+     * Executes an SQL SELECT query and returns a lazily populated stream of mapped rows.
+     * The stream keeps a connection borrowed until the last row was read, reading fails or it is
+     * closed, whichever comes first. Use it in a try-with-resources block on the thread that opened it,
+     * so a stream that is not read to the end is released too. SQL errors while reading
+     * are rethrown as RuntimeExceptions
+     *
+     * @param sql    The SQL SELECT query to execute.
+     * @param mapper A RowMapper function to convert rows into objects.
+     * @param params The parameters to bind to the query.
+     * @param <T>    The type of the mapped rows.
+     * @return a stream of mapped rows that must be closed after use
+     * @throws SQLException If the query cannot be started.
+     */
+    public <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        long start = System.nanoTime();
+        Connection reader = acquireReader();
+        long guard;
+        try {
+            guard = JIOGuard.begin("JSQL.stream");
+        } catch (IllegalStateException exception) {
+            releaseReader(reader);
+            throw exception;
+        }
+        PreparedStatement ps = null;
+        ResultSet rs;
+        try {
+            ps = reader.prepareStatement(sql);
+            ps.setFetchSize(fetchSize);
             for (int i = 0; i < params.length; i++) {
                 ps.setObject(i + 1, params[i]);
             }
-            try (ResultSet rs = ps.executeQuery()) {
-                List<T> results = new ArrayList<>();
-                while (rs.next()) {
-                    results.add(mapper.map(rs));
+            rs = ps.executeQuery();
+        } catch (SQLException exception) {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
                 }
-                return results;
             }
+            releaseReader(reader);
+            throw exception;
+        } finally {
+            JIOGuard.end("JSQL.stream", guard); // rows read later are not tracked
         }
+
+        PreparedStatement statement = ps;
+        AtomicBoolean closed = new AtomicBoolean();
+        LongAdder rows = new LongAdder();
+        Runnable release = () -> {
+            if (closed.compareAndSet(false, true)) {
+                metrics.record(sql, System.nanoTime() - start, rows.sum());
+                try (statement; rs) {
+                    // closes the result set, then the statement
+                } catch (SQLException ignored) {
+                } finally {
+                    releaseReader(reader);
+                }
+            }
+        };
+
+        Spliterator<T> cursor = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (closed.get()) {
+                    return false;
+                }
+
+                try {
+                    if (!rs.next()) {
+                        release.run(); // read to the end, no need to wait for close
+                        return false;
+                    }
+                    action.accept(mapper.map(rs));
+                    rows.increment();
+                    return true;
+                } catch (SQLException exception) {
+                    release.run();
+                    throw new RuntimeException(exception);
+                } catch (RuntimeException | Error exception) {
+                    release.run();
+                    throw exception;
+                }
+            }
+        };
+
+        return StreamSupport.stream(cursor, false).onClose(release); // backstop for streams not read to the end
+    }
+
+    /**
+     * Enables write-behind mode for {@link #enqueueUpdate(String, Object...)}.
+     * Queued updates are grouped by SQL text and written as batches, one transaction per flush
+     *
+     * @param batchSize       the amount of pending updates that triggers an early flush
+     * @param flushIntervalMs the maximum time in milliseconds an update stays queued
+     * @param capacity        the maximum amount of pending updates, callers flush themselves when it is reached
+     */
+    public synchronized void enableWriteBehind(int batchSize, long flushIntervalMs, int capacity) {
+        if (writeBehind == null) {
+            this.writeBehind = new JWriteBehind(this, batchSize, flushIntervalMs, capacity);
+        }
+    }
+
+    /**
+     * Queues an SQL update to be written in the next batch. Falls back to
+     * {@link #executeUpdate(String, Object...)} when write-behind mode is not enabled.
+     * Updates with the same SQL text keep their order, different statements in the same
+     * flush are written in order of their first appearance
+     *
+     * @param sql    The SQL query to execute.
+     * @param params The parameters to bind to the query.
+     * @throws SQLException If the connection was closed, or the queue was full and flushing it failed.
+     */
+    public void enqueueUpdate(String sql, Object... params) throws SQLException {
+        JWriteBehind queued = writeBehind;
+        if (queued == null) {
+            executeUpdate(sql, params);
+            return;
+        }
+        queued.enqueue(sql, params);
+    }
+
+    /**
+     * Writes every queued update right away, blocking until they are committed
+     *
+     * @throws SQLException If some of the queued updates could not be written.
+     */
+    public void flush() throws SQLException {
+        long guard = JIOGuard.begin("JSQL.flush");
+        try {
+            JWriteBehind queued = writeBehind;
+            if (queued != null) {
+                queued.flush();
+            }
+        } finally {
+            JIOGuard.end("JSQL.flush", guard);
+        }
+    }
+
+    /**
+     * @return the amount of queued updates waiting to be written
+     */
+    public int getPendingUpdates() {
+        JWriteBehind queued = writeBehind;
+        return queued == null ? 0 : queued.pending();
+    }
+
+    /**
+     * Executes groups of parameter sets as JDBC batches within a single transaction
+     *
+     * @param batches the parameter sets to execute, keyed by SQL text
+     * @throws SQLException If any batch fails, nothing is committed in that case
+     */
+    void executeBatches(Map<String, List<Object[]>> batches) throws SQLException {
+        runTransaction(connection -> {
+            JStatementCache statements = statements(connection);
+            for (Map.Entry<String, List<Object[]>> batch : batches.entrySet()) {
+                long start = System.nanoTime();
+                PreparedStatement ps = statements.prepare(batch.getKey());
+                try {
+                    for (Object[] params : batch.getValue()) {
+                        for (int i = 0; i < params.length; i++) {
+                            ps.setObject(i + 1, params[i]);
+                        }
+                        ps.addBatch();
+                    }
+                    long rows = 0;
+                    for (int count : ps.executeBatch()) {
+                        rows += Math.max(0, count);
+                    }
+                    metrics.record(batch.getKey(), System.nanoTime() - start, rows);
+                } finally {
+                    ps.clearBatch();
+                    statements.release(batch.getKey(), ps);
+                }
+            }
+            return null;
+        });
+        batches.keySet().forEach(this::invalidateCachedQueries);
     }
 
     /**
      * Runs a block of SQL operations within a transaction.
      * Automatically commits if successful or rolls back on error.
      *
+     * Runs on the writer connection, so updates from other threads wait until it finishes.
+     * SQLExceptions wrapped in a RuntimeException by the lambda are unwrapped and rethrown,
+     * prefer {@link #transaction(TransactionWork)} which lets the lambda throw them directly.
+     *
      * @param work A lambda accepting the active Connection to perform multiple operations.
      * @throws SQLException If the transaction fails.
      */
     public void runInTransaction(Consumer<Connection> work) throws SQLException {
-        Connection connection = getConnection();
-        boolean oldAuto = connection.getAutoCommit();
+        transaction(connection -> {
+            try {
+                work.accept(connection);
+            } catch (RuntimeException exception) {
+                if (exception.getCause() instanceof SQLException cause) {
+                    throw cause;
+                }
+                throw exception;
+            }
+            return null;
+        });
+    }
 
+    /**
+     * Runs a block of SQL operations within a transaction and returns its result.
+     * Commits if the work completes, rolls back on any exception. When the database reports
+     * lock contention (e.g. SQLITE_BUSY or a deadlock) the whole transaction is retried with
+     * a jittered exponential backoff, see {@link #setTransactionRetries(int)}.
+     * Calling this from inside another transaction on the same thread runs the work in a
+     * savepoint instead, so only the nested part is rolled back if it fails
+     *
+     * @param work A lambda receiving the writer connection, it may throw SQLExceptions.
+     * @param <T>  The result type of the work.
+     * @return The result of the work.
+     * @throws SQLException If the transaction fails or keeps failing after all retries.
+     */
+    public <T> T transaction(TransactionWork<T> work) throws SQLException {
+        long guard = JIOGuard.begin("JSQL.transaction");
         try {
-            connection.setAutoCommit(false);   // start transaction
-            work.accept(connection);           // user supplied block
-            connection.commit();               // all good: commit
-
-        } catch (SQLException exception) {
-            connection.rollback();             // something failed: undo
-            throw exception;
-
+            try {
+                return runTransaction(work);
+            } finally {
+                invalidateCachedQueries(null);
+            }
         } finally {
-            connection.setAutoCommit(oldAuto); //restore original mode
+            JIOGuard.end("JSQL.transaction", guard);
         }
     }
 
     /**
-     * Runs basic schema migration for versioning the database.
-     * Creates a default "users" table if the version is 0.
-     * Can be customized or expanded to handle future schema upgrades.
+     * Sets how many times a transaction is retried after a busy or deadlock error
      *
-     * @throws SQLException If migration fails.
+     * @param retries the maximum amount of retries, 0 disables retrying
      */
-    public void migrate() throws SQLException {
-        runInTransaction(connection -> {
+    public void setTransactionRetries(int retries) {
+        this.transactionRetries = Math.max(0, retries);
+    }
+
+    private <T> T runTransaction(TransactionWork<T> work) throws SQLException {
+        if (writeLock.isHeldByCurrentThread() && transactionDepth > 0) {
+            return runSavepoint(work);
+        }
+
+        for (int attempt = 0; ; attempt++) {
             try {
-                ResultSet rs = connection.createStatement().executeQuery("PRAGMA user_version");
-                int version = rs.next() ? rs.getInt(1) : 0;
+                return runOnce(work);
+            } catch (SQLException exception) {
+                if (!dialect.isRetryable(exception)) {
+                    throw exception;
+                }
+                if (attempt >= transactionRetries) {
+                    metrics.recordGivenUp();
+                    throw exception;
+                }
+                metrics.recordRetry();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private <T> T runOnce(TransactionWork<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            Connection connection = getConnection();
+            boolean oldAuto = connection.getAutoCommit();
+            transactionDepth++;
+
+            try {
+                connection.setAutoCommit(false);   // start transaction
+                T result = work.run(connection);   // user supplied block
+                connection.commit();               // all good: commit
+                lastWriteNanos = System.nanoTime();
+                return result;
 
-                if (version < 1) {
-                    connection.createStatement().execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
-                    connection.createStatement().execute("PRAGMA user_version = 1");
+            } catch (Throwable throwable) {
+                try {
+                    connection.rollback();         // something failed: undo
+                } catch (SQLException exception) {
+                    throwable.addSuppressed(exception);
                 }
+                throw throwable;
+
+            } finally {
+                transactionDepth--;
+                connection.setAutoCommit(oldAuto); //restore original mode
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private <T> T runSavepoint(TransactionWork<T> work) throws SQLException {
+        Connection connection = getConnection();
+        Savepoint savepoint = connection.setSavepoint();
+        transactionDepth++;
+
+        try {
+            T result = work.run(connection);
+            connection.releaseSavepoint(savepoint);
+            return result;
+
+        } catch (Throwable throwable) {
+            try {
+                connection.rollback(savepoint);
             } catch (SQLException exception) {
-                throw new RuntimeException(exception);
+                throwable.addSuppressed(exception);
             }
-        });
+            throw throwable;
+
+        } finally {
+            transactionDepth--;
+        }
+    }
+
+    private void backoff(int attempt) throws SQLException {
+        long base = Math.min(1000L, 10L << Math.min(attempt, 10));
+        long delay = base / 2 + ThreadLocalRandom.current().nextLong(base);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry a transaction", e);
+        }
+    }
+
+    /**
+     * Makes every future returned by the async methods complete on the server main thread,
+     * so callbacks attached to them can safely touch the Bukkit API
+     *
+     * @param plugin the plugin used to schedule the callbacks, or null to complete on the database thread
+     */
+    public void setMainThreadCallbacks(Plugin plugin) {
+        this.callbackPlugin = plugin;
+    }
+
+    /**
+     * Runs a task on the JSQL executor. Tasks run on virtual threads, but only as many
+     * run at once as there are connections, so the rest wait without holding a connection
+     *
+     * @param task the work to run off the calling thread
+     * @param <T>  the result type
+     * @return a future completed with the result of the task
+     */
+    public <T> CompletableFuture<T> supplyAsync(SQLTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    asyncPermits.acquire();
+                } catch (InterruptedException e) {
+                    complete(future, null, e);
+                    return;
+                }
+
+                try {
+                    complete(future, task.call(), null);
+                } catch (Throwable throwable) {
+                    complete(future, null, throwable);
+                } finally {
+                    asyncPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Asynchronous variant of {@link #executeUpdate(String, Object...)}
+     *
+     * @param sql    The SQL query to execute.
+     * @param params The parameters to bind to the query.
+     * @return a future completed with the number of rows affected
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String sql, Object... params) {
+        return supplyAsync(() -> executeUpdate(sql, params));
+    }
+
+    /**
+     * Asynchronous variant of {@link #executeQuery(String, RowMapper, Object...)}
+     *
+     * @param sql    The SQL SELECT query to execute.
+     * @param mapper A RowMapper function to convert rows into objects.
+     * @param params The parameters to bind to the query.
+     * @param <T>    The type of object to return in the result list.
+     * @return a future completed with the mapped rows
+     */
+    public <T> CompletableFuture<List<T>> executeQueryAsync(String sql, RowMapper<T> mapper, Object... params) {
+        return supplyAsync(() -> executeQuery(sql, mapper, params));
+    }
+
+    /**
+     * Asynchronous variant of {@link #transaction(TransactionWork)}
+     *
+     * @param work A lambda receiving the writer connection, it may throw SQLExceptions.
+     * @param <T>  The result type of the work.
+     * @return a future completed with the result once the transaction is committed
+     */
+    public <T> CompletableFuture<T> transactionAsync(TransactionWork<T> work) {
+        return supplyAsync(() -> transaction(work));
+    }
+
+    private <T> void complete(CompletableFuture<T> future, T result, Throwable throwable) {
+        Plugin plugin = callbackPlugin;
+        if (plugin != null && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> deliver(future, result, throwable));
+        } else {
+            deliver(future, result, throwable);
+        }
+    }
+
+    private <T> void deliver(CompletableFuture<T> future, T result, Throwable throwable) {
+        if (throwable != null) {
+            future.completeExceptionally(throwable);
+        } else {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Gets the migration registry of this database. Register every migration,
+     * then call {@link #migrate()} once on startup
+     *
+     * @return the migration registry
+     */
+    public JMigrations getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * Applies every pending migration registered in {@link #getMigrations()}, in version order.
+     * Applied migrations are skipped after a single read of the migration ledger
+     *
+     * @return the amount of migrations applied
+     * @throws SQLException If migration fails.
+     */
+    public int migrate() throws SQLException {
+        long guard = JIOGuard.begin("JSQL.migrate");
+        try {
+            return migrations.migrate();
+        } finally {
+            JIOGuard.end("JSQL.migrate", guard);
+        }
     }
 
 //     HOW TO USE
 //        public void onEnable() {
 //            try {
 //                JSQL sql = new JSQL(getDataFolder() + "/tags.db");
+//                // or pooled: new JSQL(getDataFolder() + "/tags.db", 4);
+//                // or MySQL: new JSQL(JSQLDialect.MYSQL, "jdbc:mysql://localhost:3306/tags", "user", "pass", 4);
+//                sql.getMigrations()
+//                        .add(1, "create tags", "CREATE TABLE tags (id INTEGER PRIMARY KEY, name TEXT)")
+//                        .loadResources(this, "migrations"); // e.g. migrations/V2__add_color.sql
+//                sql.migrate();
 //                tagsDatabase = new TagsDatabase(sql);
-//            } catch (SQLException e) {
+//            } catch (SQLException | IOException e) {
 //                getLogger().severe("Failed to initialize database");
 //                e.printStackTrace();
 //                getServer().getPluginManager().disablePlugin(this);
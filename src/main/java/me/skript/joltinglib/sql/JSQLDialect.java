@@ -0,0 +1,360 @@
+package me.skript.joltinglib.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The database backends supported by {@link JSQL}, each knowing the SQL that differs between them.
+ * The JDBC driver of the chosen backend has to be on the classpath, SQLite and MySQL are
+ * bundled with the server while MariaDB and H2 have to be shaded by the plugin
+ */
+public enum JSQLDialect {
+
+    SQLITE('"', 5, 6) {
+        @Override
+        void initWriter(Connection connection, boolean pooled) throws SQLException {
+            execute(connection, "PRAGMA busy_timeout = 5000"); // wait for backups and other connections
+            if (pooled) {
+                execute(connection,
+                        "PRAGMA journal_mode = WAL",
+                        "PRAGMA synchronous = NORMAL",
+                        "PRAGMA temp_store = MEMORY",
+                        "PRAGMA cache_size = -16000");
+            }
+        }
+
+        @Override
+        void initReader(Connection connection) throws SQLException {
+            execute(connection,
+                    "PRAGMA query_only = ON",
+                    "PRAGMA busy_timeout = 5000",
+                    "PRAGMA temp_store = MEMORY",
+                    "PRAGMA cache_size = -8000",
+                    "PRAGMA mmap_size = 268435456");
+        }
+
+        @Override
+        public String upsert(String table, List<String> columns, List<String> keyColumns, int rows) {
+            String assignments = assignments(columns, keyColumns, "excluded.%s");
+            return insert(table, columns, rows) + " ON CONFLICT (" + columnList(keyColumns) + ") DO "
+                    + (assignments.isEmpty() ? "NOTHING" : "UPDATE SET " + assignments);
+        }
+
+        @Override
+        int errorCode(SQLException exception) {
+            return exception.getErrorCode() & 0xFF; // strip the extended result code
+        }
+
+        @Override
+        String backup(String target) {
+            return "VACUUM INTO " + literal(target);
+        }
+
+        @Override
+        List<String> dropSecondaryIndexes(Connection connection, String table) throws SQLException {
+            List<String> recreate = new ArrayList<>();
+            List<String> drop = new ArrayList<>();
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL")) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String definition = rs.getString(2);
+                        if (!definition.regionMatches(true, 0, "CREATE UNIQUE", 0, "CREATE UNIQUE".length())) {
+                            drop.add("DROP INDEX " + quote(rs.getString(1)));
+                            recreate.add(definition);
+                        }
+                    }
+                }
+            }
+            execute(connection, drop.toArray(new String[0]));
+            return recreate;
+        }
+    },
+
+    MYSQL('`', 1205, 1213) {
+        @Override
+        String prepareURL(String jdbcURL) {
+            return withBatchRewrite(jdbcURL);
+        }
+
+        @Override
+        public String upsert(String table, List<String> columns, List<String> keyColumns, int rows) {
+            return upsertOnDuplicateKey(table, columns, keyColumns, rows);
+        }
+
+        @Override
+        int maxParameters() {
+            return 65535;
+        }
+    },
+
+    MARIADB('`', 1205, 1213) {
+        @Override
+        String prepareURL(String jdbcURL) {
+            return withBatchRewrite(jdbcURL);
+        }
+
+        @Override
+        public String upsert(String table, List<String> columns, List<String> keyColumns, int rows) {
+            return upsertOnDuplicateKey(table, columns, keyColumns, rows);
+        }
+
+        @Override
+        int maxParameters() {
+            return 65535;
+        }
+    },
+
+    H2('"', 40001, 50200) {
+        @Override
+        public String upsert(String table, List<String> columns, List<String> keyColumns, int rows) {
+            return "MERGE INTO " + quote(table) + " (" + columnList(columns) + ") KEY (" + columnList(keyColumns)
+                    + ") VALUES " + values(columns.size(), rows);
+        }
+
+        @Override
+        String backup(String target) {
+            return "BACKUP TO " + literal(target);
+        }
+    };
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final char quote;
+    private final int[] retryableCodes;
+
+    JSQLDialect(char quote, int... retryableCodes) {
+        this.quote = quote;
+        this.retryableCodes = retryableCodes;
+    }
+
+    /**
+     * Builds the URL of an in-memory H2 database that lives until the JVM stops,
+     * handy as a local stand-in for a networked database
+     *
+     * @param name the name of the in-memory database
+     * @return the JDBC URL of the database
+     */
+    public static String h2MemoryURL(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * Quotes an identifier such as a table or column name
+     *
+     * @param identifier the identifier to quote
+     * @return the quoted identifier
+     */
+    public String quote(String identifier) {
+        return quote + identifier.replace(String.valueOf(quote), String.valueOf(quote) + quote) + quote;
+    }
+
+    /**
+     * Builds a single row insert-or-update statement, with one placeholder per column in order
+     *
+     * @param table      the table to write to
+     * @param columns    every column written, including the key columns
+     * @param keyColumns the columns of the primary or unique key identifying the row
+     * @return the upsert SQL
+     */
+    public String upsert(String table, List<String> columns, List<String> keyColumns) {
+        return upsert(table, columns, keyColumns, 1);
+    }
+
+    /**
+     * Builds a multi-row insert-or-update statement, with one placeholder per column for every row,
+     * row after row
+     *
+     * @param table      the table to write to
+     * @param columns    every column written, including the key columns
+     * @param keyColumns the columns of the primary or unique key identifying the rows
+     * @param rows       the amount of rows written by the statement
+     * @return the upsert SQL
+     */
+    public abstract String upsert(String table, List<String> columns, List<String> keyColumns, int rows);
+
+    /**
+     * Builds a multi-row insert statement, with one placeholder per column for every row, row after row
+     *
+     * @param table   the table to write to
+     * @param columns the columns written
+     * @param rows    the amount of rows written by the statement
+     * @return the insert SQL
+     */
+    public String insert(String table, List<String> columns, int rows) {
+        return "INSERT INTO " + quote(table) + " (" + columnList(columns) + ") VALUES " + values(columns.size(), rows);
+    }
+
+    /**
+     * Calculates how many rows one multi-row statement may hold without going over
+     * the bind parameter limit of the backend
+     *
+     * @param columns the amount of columns per row
+     * @return the amount of rows per statement, at least 1
+     */
+    public int rowsPerStatement(int columns) {
+        return Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, maxParameters() / Math.max(1, columns)));
+    }
+
+    /**
+     * Checks whether an exception was caused by lock contention, such as SQLITE_BUSY or a
+     * deadlock, meaning the same transaction may succeed if it is simply run again
+     *
+     * @param exception the exception thrown by the transaction
+     * @return true if retrying the transaction makes sense
+     */
+    public boolean isRetryable(SQLException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                if ("40001".equals(sqlException.getSQLState())) {
+                    return true;
+                }
+                int code = errorCode(sqlException);
+                for (int retryable : retryableCodes) {
+                    if (code == retryable) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param exception an exception thrown by the driver
+     * @return the vendor error code compared against the retryable codes
+     */
+    int errorCode(SQLException exception) {
+        return exception.getErrorCode();
+    }
+
+    /**
+     * Adjusts the JDBC URL given by the user, e.g. to enable driver side batch rewriting
+     *
+     * @param jdbcURL the URL given by the user
+     * @return the URL used to connect
+     */
+    String prepareURL(String jdbcURL) {
+        return jdbcURL;
+    }
+
+    /**
+     * Tunes a freshly opened writer connection
+     *
+     * @param connection the writer connection
+     * @param pooled     whether read-only connections are opened alongside it
+     * @throws SQLException If tuning fails
+     */
+    void initWriter(Connection connection, boolean pooled) throws SQLException {
+    }
+
+    /**
+     * Tunes a freshly opened read-only pool connection
+     *
+     * @param connection the reader connection
+     * @throws SQLException If tuning fails
+     */
+    void initReader(Connection connection) throws SQLException {
+        connection.setReadOnly(true);
+    }
+
+    /**
+     * Builds the statement writing an online backup of the database to a file
+     *
+     * @param target the absolute path of the backup file
+     * @return the backup SQL, or null if the backend has no online backup
+     */
+    String backup(String target) {
+        return null;
+    }
+
+    /**
+     * @return the maximum amount of bind parameters in one statement
+     */
+    int maxParameters() {
+        return 32766;
+    }
+
+    /**
+     * Drops the non-unique indexes of a table ahead of a bulk load, unique indexes are kept
+     * since upserts and constraints depend on them. Backends without support keep every index
+     *
+     * @param connection the connection of the running bulk load transaction
+     * @param table      the table about to be loaded
+     * @return the statements recreating the dropped indexes
+     * @throws SQLException If the indexes cannot be read or dropped
+     */
+    List<String> dropSecondaryIndexes(Connection connection, String table) throws SQLException {
+        return List.of();
+    }
+
+    static String literal(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    static void execute(Connection connection, String... statements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+
+    String columnList(List<String> columns) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String column : columns) {
+            joiner.add(quote(column));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Builds the SET part of an upsert for every non-key column
+     *
+     * @param columns     every column written
+     * @param keyColumns  the key columns, left untouched
+     * @param valueFormat the format of the new value, given the quoted column name
+     * @return the assignments, empty if every column is part of the key
+     */
+    String assignments(List<String> columns, List<String> keyColumns, String valueFormat) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String column : columns) {
+            if (!keyColumns.contains(column)) {
+                joiner.add(quote(column) + " = " + String.format(valueFormat, quote(column)));
+            }
+        }
+        return joiner.toString();
+    }
+
+    String upsertOnDuplicateKey(String table, List<String> columns, List<String> keyColumns, int rows) {
+        String assignments = assignments(columns, keyColumns, "VALUES(%s)");
+        if (assignments.isEmpty()) {
+            return "INSERT IGNORE" + insert(table, columns, rows).substring("INSERT".length());
+        }
+        return insert(table, columns, rows) + " ON DUPLICATE KEY UPDATE " + assignments;
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    static String values(int columns, int rows) {
+        return String.join(", ", Collections.nCopies(rows, "(" + placeholders(columns) + ")"));
+    }
+
+    static String withBatchRewrite(String jdbcURL) {
+        if (jdbcURL.contains("rewriteBatchedStatements")) {
+            return jdbcURL;
+        }
+        return jdbcURL + (jdbcURL.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+    }
+}
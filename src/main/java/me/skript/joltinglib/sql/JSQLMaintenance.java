@@ -0,0 +1,250 @@
+package me.skript.joltinglib.sql;
+
+import me.skript.joltinglib.utilities.JDebug;
+import me.skript.joltinglib.utilities.JIOGuard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Background backups and compaction for {@link JSQL}.
+ * In pooled (WAL) mode, backups use {@code VACUUM INTO} on a separate connection, which reads a
+ * consistent snapshot without ever blocking the writer. Without WAL a reader blocks writers,
+ * so the backup runs on the writer connection instead and writes wait on the writer lock. Compaction frees pages with
+ * {@code PRAGMA incremental_vacuum} in small steps, taking the writer lock for one step
+ * at a time, and only once no write happened for a while
+ */
+class JSQLMaintenance {
+
+    private static final DateTimeFormatter BACKUP_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+    private static final int VACUUM_MAX_STEPS = 4096;
+    private static final long VACUUM_PAUSE_MILLIS = 25;
+
+    private final JSQL sql;
+    private final Path backupDirectory;
+    private final long backupIntervalNanos;
+    private final int keepBackups;
+    private final long quietNanos;
+    private final ScheduledExecutorService scheduler;
+    private long lastBackup = System.nanoTime();
+    private long lastCompaction;
+
+    /**
+     * @param sql                   the database to maintain
+     * @param backupDirectory       the folder backups are written to
+     * @param backupIntervalMinutes the time between two backups in minutes
+     * @param keepBackups           the amount of backups kept, older ones are deleted
+     * @param quietSeconds          how long no write must happen before compaction runs, in seconds
+     */
+    JSQLMaintenance(JSQL sql, Path backupDirectory, long backupIntervalMinutes, int keepBackups, long quietSeconds) {
+        this.sql = sql;
+        this.backupDirectory = backupDirectory;
+        this.backupIntervalNanos = TimeUnit.MINUTES.toNanos(backupIntervalMinutes);
+        this.keepBackups = Math.max(1, keepBackups);
+        this.quietNanos = TimeUnit.SECONDS.toNanos(quietSeconds);
+        this.lastCompaction = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JSQL-Maintenance");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.scheduler.execute(this::prepare);
+        this.scheduler.scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Switches the database to incremental auto-vacuum before the first backup or compaction,
+     * the full VACUUM this may need can take long on a large database
+     */
+    private void prepare() {
+        long guard = JIOGuard.begin("JSQL.enableMaintenance");
+        try {
+            enableIncrementalVacuum(sql);
+        } catch (SQLException | RuntimeException e) {
+            JDebug.logAlways(Level.SEVERE, "[JSQL] Failed to enable incremental auto-vacuum. Error: " + e.getMessage());
+        } finally {
+            JIOGuard.end("JSQL.enableMaintenance", guard);
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        try {
+            if (now - lastBackup >= backupIntervalNanos) {
+                lastBackup = now;
+                backup(sql, backupDirectory);
+                rotate();
+            }
+
+            boolean quiet = now - sql.getLastWriteNanos() >= quietNanos;
+            if (quiet && now - lastCompaction >= TimeUnit.HOURS.toNanos(1)) {
+                lastCompaction = now;
+                compact(sql);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            JDebug.logAlways(Level.SEVERE, "[JSQL] Database maintenance failed. Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a consistent copy of the database into the given folder
+     *
+     * @param sql       the database to back up
+     * @param directory the folder to write the backup to
+     * @return the written backup file
+     * @throws SQLException If the backend has no online backup or the backup fails
+     */
+    static Path backup(JSQL sql, Path directory) throws SQLException {
+        String extension = sql.getDialect() == JSQLDialect.H2 ? ".zip" : ".db";
+        Path target = directory.resolve("backup-" + LocalDateTime.now().format(BACKUP_NAME) + extension).toAbsolutePath();
+        String backupSql = sql.getDialect().backup(target.toString());
+        if (backupSql == null) {
+            throw new SQLFeatureNotSupportedException("Online backups are not supported for " + sql.getDialect());
+        }
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new SQLException("Cannot create the backup folder " + directory, e);
+        }
+
+        if (!sql.isPooled()) {
+            sql.writeLock().lock();
+            try (Statement statement = sql.getConnection().createStatement()) {
+                statement.execute(backupSql);
+            } finally {
+                sql.writeLock().unlock();
+            }
+            return target;
+        }
+
+        try (Connection connection = sql.openConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(backupSql);
+        }
+        return target;
+    }
+
+    /**
+     * Returns free pages to the file system in small steps, then refreshes the query planner
+     * statistics. Only SQLite databases in incremental auto-vacuum mode release pages
+     *
+     * @param sql the database to compact
+     * @throws SQLException If a step fails
+     */
+    static void compact(JSQL sql) throws SQLException {
+        if (sql.getDialect() != JSQLDialect.SQLITE) {
+            return;
+        }
+
+        for (int step = 0; step < VACUUM_MAX_STEPS; step++) {
+            sql.writeLock().lock();
+            try (Statement statement = sql.getConnection().createStatement()) {
+                if (readInt(statement, "PRAGMA freelist_count") == 0) {
+                    break;
+                }
+                if (statement.execute("PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")")) {
+                    try (ResultSet rs = statement.getResultSet()) {
+                        while (rs.next()) {
+                            // stepping through the pragma is what frees the pages
+                        }
+                    }
+                }
+            } finally {
+                sql.writeLock().unlock();
+            }
+
+            try {
+                Thread.sleep(VACUUM_PAUSE_MILLIS); // let waiting writers in between steps
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        sql.writeLock().lock();
+        try (Statement statement = sql.getConnection().createStatement()) {
+            statement.execute("PRAGMA optimize");
+        } finally {
+            sql.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Switches a SQLite database to incremental auto-vacuum so {@link #compact(JSQL)} can free pages.
+     * The mode only takes effect on an existing database after a full VACUUM, which runs once here
+     * while holding the writer lock, so this runs on the maintenance thread. If the mode still did not change, compaction is reported as unavailable
+     *
+     * @param sql the database to configure
+     * @throws SQLException If the mode cannot be changed
+     */
+    static void enableIncrementalVacuum(JSQL sql) throws SQLException {
+        if (sql.getDialect() != JSQLDialect.SQLITE) {
+            return;
+        }
+
+        sql.writeLock().lock();
+        try (Statement statement = sql.getConnection().createStatement()) {
+            if (readInt(statement, "PRAGMA auto_vacuum") != 2) {
+                statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                if (readInt(statement, "PRAGMA auto_vacuum") != 2) {
+                    JDebug.logAlways(Level.INFO, "[JSQL] Rebuilding the database once to enable incremental compaction");
+                    statement.execute("VACUUM");
+                }
+                if (readInt(statement, "PRAGMA auto_vacuum") != 2) {
+                    JDebug.logAlways(Level.WARNING, "[JSQL] Incremental auto-vacuum could not be enabled, compaction will not free any pages");
+                }
+            }
+        } finally {
+            sql.writeLock().unlock();
+        }
+    }
+
+    private void rotate() throws IOException {
+        List<Path> backups;
+        try (Stream<Path> files = Files.list(backupDirectory)) {
+            backups = files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("backup-") && (name.endsWith(".db") || name.endsWith(".zip"));
+            }).sorted().toList();
+        }
+
+        for (int i = 0; i < backups.size() - keepBackups; i++) {
+            Files.deleteIfExists(backups.get(i));
+        }
+    }
+
+    private static int readInt(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Stops scheduling maintenance, waiting for a running backup or compaction to finish
+     */
+    void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package me.skript.joltinglib.sql;
+
+import me.skript.joltinglib.utilities.JDebug;
+import me.skript.joltinglib.utilities.JIOGuard;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Per-statement statistics of a {@link JSQL} instance: call counts, row counts and
+ * latency percentiles, plus a log of statements slower than a configurable threshold
+ */
+public class JSQLMetrics {
+
+    private static final int MAX_STATEMENTS = 1000;
+    private static final String OTHER_STATEMENTS = "<other>";
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final LongAdder transactionRetries = new LongAdder();
+    private final LongAdder transactionsGivenUp = new LongAdder();
+    private volatile long slowQueryNanos;
+
+    /**
+     * Snapshot of the statistics of one SQL text, all times are in milliseconds
+     */
+    public record StatementSnapshot(String sql, long calls, long rows, double totalMillis, double meanMillis,
+                                    double p50Millis, double p95Millis, double p99Millis, double maxMillis) {}
+
+    /**
+     * Sets the duration above which a statement is logged, including the calling thread
+     *
+     * @param millis the threshold in milliseconds, 0 disables the slow query log
+     */
+    public void setSlowQueryThreshold(long millis) {
+        this.slowQueryNanos = Math.max(0, millis) * 1_000_000L;
+    }
+
+    /**
+     * Records one execution of a statement
+     *
+     * @param sql   the SQL text that was executed
+     * @param nanos how long the call took in nanoseconds
+     * @param rows  the amount of rows read or written
+     */
+    void record(String sql, long nanos, long rows) {
+        StatementStats stats = statements.get(sql);
+        if (stats == null) {
+            String key = statements.size() < MAX_STATEMENTS ? sql : OTHER_STATEMENTS;
+            stats = statements.computeIfAbsent(key, k -> new StatementStats());
+        }
+        stats.record(nanos, rows);
+
+        long threshold = slowQueryNanos;
+        if (threshold > 0 && nanos >= threshold) {
+            Thread thread = Thread.currentThread();
+            JDebug.logAlways(Level.WARNING, String.format(Locale.ROOT, "[JSQL] Slow query (%.1f ms, %d rows, thread %s, main thread: %s): %s",
+                    nanos / 1_000_000.0, rows, thread.getName(), JIOGuard.isPrimaryThread(), sql));
+        }
+    }
+
+    /**
+     * Records a transaction being retried after a busy or deadlock error
+     */
+    void recordRetry() {
+        transactionRetries.increment();
+    }
+
+    /**
+     * Records a transaction failing after using up all of its retries
+     */
+    void recordGivenUp() {
+        transactionsGivenUp.increment();
+    }
+
+    /**
+     * @return how many times a transaction was retried because the database was busy
+     */
+    public long getTransactionRetries() {
+        return transactionRetries.sum();
+    }
+
+    /**
+     * @return how many transactions still failed after using up all of their retries
+     */
+    public long getTransactionsGivenUp() {
+        return transactionsGivenUp.sum();
+    }
+
+    /**
+     * @return the statistics of every statement, slowest in total first
+     */
+    public List<StatementSnapshot> snapshot() {
+        List<StatementSnapshot> snapshots = new ArrayList<>();
+        statements.forEach((sql, stats) -> snapshots.add(stats.snapshot(sql)));
+        snapshots.sort(Comparator.comparingDouble(StatementSnapshot::totalMillis).reversed());
+        return snapshots;
+    }
+
+    /**
+     * Writes the current snapshot as a tab separated table
+     *
+     * @param path the file to write, replaced if it exists
+     * @throws IOException If the file cannot be written
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            writer.println("# transaction retries: " + getTransactionRetries() + ", given up: " + getTransactionsGivenUp());
+            writer.println("calls\trows\ttotal_ms\tmean_ms\tp50_ms\tp95_ms\tp99_ms\tmax_ms\tsql");
+            for (StatementSnapshot snapshot : snapshot()) {
+                writer.printf(Locale.ROOT, "%d\t%d\t%.3f\t%.3f\t%.3f\t%.3f\t%.3f\t%.3f\t%s%n",
+                        snapshot.calls(), snapshot.rows(), snapshot.totalMillis(), snapshot.meanMillis(),
+                        snapshot.p50Millis(), snapshot.p95Millis(), snapshot.p99Millis(), snapshot.maxMillis(),
+                        snapshot.sql().replaceAll("\\s+", " "));
+            }
+        }
+    }
+
+    /**
+     * Clears all recorded statistics
+     */
+    public void reset() {
+        statements.clear();
+        transactionRetries.reset();
+        transactionsGivenUp.reset();
+    }
+
+    /**
+     * Lock-free statistics of one statement. Latencies go into a log-linear histogram with
+     * 8 buckets per power of two, so percentiles are accurate to within 12.5%
+     */
+    private static final class StatementStats {
+
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, long rowCount) {
+            long value = Math.max(0, nanos);
+            calls.increment();
+            rows.add(rowCount);
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+            histogram.incrementAndGet(bucket(value));
+        }
+
+        StatementSnapshot snapshot(String sql) {
+            long count = calls.sum();
+            long total = totalNanos.sum();
+            long[] counts = new long[BUCKETS];
+            long histogramTotal = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                histogramTotal += counts[i];
+            }
+
+            return new StatementSnapshot(sql, count, rows.sum(), millis(total), count == 0 ? 0 : millis(total / count),
+                    millis(percentile(counts, histogramTotal, 0.50)), millis(percentile(counts, histogramTotal, 0.95)),
+                    millis(percentile(counts, histogramTotal, 0.99)), millis(maxNanos.get()));
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            int shift = magnitude - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        private static long percentile(long[] counts, long total, double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
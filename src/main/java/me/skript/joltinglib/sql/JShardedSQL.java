@@ -0,0 +1,264 @@
+package me.skript.joltinglib.sql;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Spreads rows over several SQLite files by a shard key, e.g. a player UUID. SQLite allows one
+ * writer per file, so every shard having its own writer lets writes run in parallel.
+ * Rows sharing a shard key always end up in the same file, queries spanning every shard
+ * are sent to all files in parallel and their results merged
+ */
+public class JShardedSQL {
+
+    private final List<JSQL> shards;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("JSQL-Shard-", 0).factory());
+
+    /**
+     * Opens or creates the shard files {@code <path>-0.db} up to {@code <path>-<shards - 1>.db}.
+     * The amount of shards must never change for an existing set of files,
+     * otherwise keys would be looked up in the wrong file
+     *
+     * @param path            the path of the database files, without the .db extension
+     * @param shards          the amount of shard files
+     * @param readersPerShard the amount of read-only connections per shard, see {@link JSQL#JSQL(String, int)}
+     * @throws SQLException If a shard cannot be opened
+     */
+    public JShardedSQL(String path, int shards, int readersPerShard) throws SQLException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        List<JSQL> opened = new ArrayList<>(shards);
+        try {
+            for (int i = 0; i < shards; i++) {
+                opened.add(new JSQL(path + "-" + i + ".db", readersPerShard));
+            }
+        } catch (SQLException exception) {
+            for (JSQL shard : opened) {
+                shard.closeConnection();
+            }
+            throw exception;
+        }
+        this.shards = List.copyOf(opened);
+    }
+
+    /**
+     * @return the amount of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return every shard, in shard index order
+     */
+    public List<JSQL> getShards() {
+        return shards;
+    }
+
+    /**
+     * Picks the shard of a key. The key's {@code hashCode()} must be stable between restarts,
+     * which holds for UUIDs, Strings and numbers
+     *
+     * @param shardKey the key the row belongs to
+     * @return the shard holding every row of that key
+     */
+    public JSQL shard(Object shardKey) {
+        int hash = shardKey.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return shards.get(Math.floorMod(hash, shards.size()));
+    }
+
+    /**
+     * Executes an SQL update on the shard of the given key
+     *
+     * @param shardKey the key the row belongs to
+     * @param sql      The SQL query to execute.
+     * @param params   The parameters to bind to the query.
+     * @return The number of rows affected.
+     * @throws SQLException If an error occurs during execution.
+     */
+    public int executeUpdate(Object shardKey, String sql, Object... params) throws SQLException {
+        return shard(shardKey).executeUpdate(sql, params);
+    }
+
+    /**
+     * Queues an SQL update on the shard of the given key, see {@link JSQL#enqueueUpdate(String, Object...)}
+     *
+     * @param shardKey the key the row belongs to
+     * @param sql      The SQL query to execute.
+     * @param params   The parameters to bind to the query.
+     * @throws SQLException If the queue was full and flushing it failed.
+     */
+    public void enqueueUpdate(Object shardKey, String sql, Object... params) throws SQLException {
+        shard(shardKey).enqueueUpdate(sql, params);
+    }
+
+    /**
+     * Executes an SQL SELECT query on the shard of the given key
+     *
+     * @param shardKey the key the rows belong to
+     * @param sql      The SQL SELECT query to execute.
+     * @param mapper   A RowMapper function to convert rows into objects.
+     * @param params   The parameters to bind to the query.
+     * @param <T>      The type of object to return in the result list.
+     * @return A list of objects mapped from the result set.
+     * @throws SQLException If an error occurs during execution.
+     */
+    public <T> List<T> executeQuery(Object shardKey, String sql, JSQL.RowMapper<T> mapper, Object... params) throws SQLException {
+        return shard(shardKey).executeQuery(sql, mapper, params);
+    }
+
+    /**
+     * Runs a transaction on the shard of the given key, see {@link JSQL#transaction(JSQL.TransactionWork)}
+     *
+     * @param shardKey the key the rows belong to
+     * @param work     A lambda receiving the writer connection of the shard.
+     * @param <T>      The result type of the work.
+     * @return The result of the work.
+     * @throws SQLException If the transaction fails.
+     */
+    public <T> T transaction(Object shardKey, JSQL.TransactionWork<T> work) throws SQLException {
+        return shard(shardKey).transaction(work);
+    }
+
+    /**
+     * Executes an SQL statement on every shard in parallel, e.g. schema changes
+     *
+     * @param sql    The SQL query to execute.
+     * @param params The parameters to bind to the query.
+     * @return The number of rows affected over all shards.
+     * @throws SQLException If the statement fails on any shard.
+     */
+    public int executeUpdateAll(String sql, Object... params) throws SQLException {
+        int rows = 0;
+        for (int count : fanOut(shard -> shard.executeUpdate(sql, params))) {
+            rows += count;
+        }
+        return rows;
+    }
+
+    /**
+     * Executes an SQL SELECT query on every shard in parallel and concatenates the results
+     *
+     * @param sql    The SQL SELECT query to execute.
+     * @param mapper A RowMapper function to convert rows into objects.
+     * @param params The parameters to bind to the query.
+     * @param <T>    The type of object to return in the result list.
+     * @return The rows of every shard, in shard order.
+     * @throws SQLException If the query fails on any shard.
+     */
+    public <T> List<T> queryAll(String sql, JSQL.RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> merged = new ArrayList<>();
+        for (List<T> rows : fanOut(shard -> shard.executeQuery(sql, mapper, params))) {
+            merged.addAll(rows);
+        }
+        return merged;
+    }
+
+    /**
+     * Executes an SQL SELECT query on every shard in parallel and merges the results in order,
+     * e.g. for leaderboards. The query should sort and limit its rows the same way, so every
+     * shard only returns its own top rows
+     *
+     * @param sql    The SQL SELECT query to execute.
+     * @param mapper A RowMapper function to convert rows into objects.
+     * @param order  The order of the merged rows, matching the ORDER BY of the query.
+     * @param limit  The maximum amount of rows returned.
+     * @param params The parameters to bind to the query.
+     * @param <T>    The type of object to return in the result list.
+     * @return The first rows over all shards in the given order.
+     * @throws SQLException If the query fails on any shard.
+     */
+    public <T> List<T> queryTop(String sql, JSQL.RowMapper<T> mapper, Comparator<? super T> order, int limit, Object... params) throws SQLException {
+        List<T> merged = queryAll(sql, mapper, params);
+        merged.sort(order);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Writes the queued updates of every shard
+     *
+     * @throws SQLException If a shard fails to flush.
+     */
+    public void flush() throws SQLException {
+        fanOut(shard -> {
+            shard.flush();
+            return null;
+        });
+    }
+
+    /**
+     * Closes every shard, see {@link JSQL#closeConnection()}
+     *
+     * @throws SQLException If a shard fails to close.
+     */
+    public void closeConnection() throws SQLException {
+        executor.shutdown();
+        SQLException failure = null;
+        for (JSQL shard : shards) {
+            try {
+                shard.closeConnection();
+            } catch (SQLException exception) {
+                if (failure == null) {
+                    failure = exception;
+                } else {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardTask<T> {
+        T run(JSQL shard) throws SQLException;
+    }
+
+    /**
+     * Runs a task on every shard in parallel and waits for all of them
+     *
+     * @param task the task to run per shard
+     * @param <T>  the result type
+     * @return the results in shard order
+     * @throws SQLException the first failure, later ones are added as suppressed
+     */
+    private <T> List<T> fanOut(ShardTask<T> task) throws SQLException {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (JSQL shard : shards) {
+            futures.add(executor.submit(() -> task.run(shard)));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        SQLException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                SQLException exception = e.getCause() instanceof SQLException sqlException
+                        ? sqlException : new SQLException(e.getCause());
+                if (failure == null) {
+                    failure = exception;
+                } else {
+                    failure.addSuppressed(exception);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the shards", e);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+}
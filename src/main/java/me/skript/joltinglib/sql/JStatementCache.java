@@ -0,0 +1,121 @@
+package me.skript.joltinglib.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for a single connection.
+ * A cached statement is handed out to one caller at a time; a nested query with the same SQL
+ * while it is in use gets its own uncached statement, so it cannot reset the outer result set.
+ * Only the thread currently owning the connection may use it
+ */
+class JStatementCache {
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final Map<String, PreparedStatement> statements;
+    private final Set<PreparedStatement> checkedOut = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param connection the connection the statements belong to
+     * @param maxSize    the maximum amount of cached statements, 0 disables caching
+     * @param hits       counter incremented on every cache hit
+     * @param misses     counter incremented on every cache miss
+     */
+    JStatementCache(Connection connection, int maxSize, LongAdder hits, LongAdder misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > JStatementCache.this.maxSize) {
+                    if (!checkedOut.contains(eldest.getValue())) {
+                        closeQuietly(eldest.getValue()); // otherwise closed once it is released
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the given SQL, preparing it on a miss. If the cached
+     * statement is still in use, a new statement that is closed on release is prepared instead.
+     * Every statement must be handed back with {@link #release(String, PreparedStatement)}
+     *
+     * @param sql the SQL text of the statement
+     * @return a statement ready to have its parameters bound
+     * @throws SQLException If the statement cannot be prepared
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && checkedOut.contains(statement)) {
+            misses.increment();
+            return connection.prepareStatement(sql); // busy, e.g. a nested query with the same SQL
+        }
+        if (statement != null && !statement.isClosed()) {
+            hits.increment();
+            checkedOut.add(statement);
+            return statement;
+        }
+
+        misses.increment();
+        statement = connection.prepareStatement(sql);
+        if (maxSize > 0) {
+            statements.put(sql, statement);
+            checkedOut.add(statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Hands a statement back after use. Cached statements get their parameters cleared,
+     * statements that did not fit in the cache are closed
+     *
+     * @param sql       the SQL text the statement was prepared with
+     * @param statement the statement returned by {@link #prepare(String)}
+     */
+    void release(String sql, PreparedStatement statement) {
+        boolean cached = checkedOut.remove(statement) && statements.get(sql) == statement;
+        if (cached) {
+            try {
+                statement.clearParameters();
+            } catch (SQLException e) {
+                statements.remove(sql);
+                closeQuietly(statement);
+            }
+        } else {
+            closeQuietly(statement);
+        }
+    }
+
+    /**
+     * Closes every cached statement
+     */
+    void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        checkedOut.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
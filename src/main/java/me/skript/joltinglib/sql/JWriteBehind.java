@@ -0,0 +1,158 @@
+package me.skript.joltinglib.sql;
+
+import me.skript.joltinglib.utilities.JDebug;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Write-behind queue for {@link JSQL}. Updates are buffered and written as JDBC batches,
+ * one transaction per flush, either on an interval or once enough updates are pending
+ */
+class JWriteBehind {
+
+    private final JSQL sql;
+    private final int batchSize;
+    private final BlockingQueue<PendingUpdate> queue;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    private record PendingUpdate(String sql, Object[] params) {}
+
+    /**
+     * @param sql             the database the updates are written to
+     * @param batchSize       the amount of pending updates that triggers an early flush
+     * @param flushIntervalMs the maximum time in milliseconds an update waits before being written
+     * @param capacity        the maximum amount of pending updates before callers have to flush themselves
+     */
+    JWriteBehind(JSQL sql, int batchSize, long flushIntervalMs, int capacity) {
+        this.sql = sql;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, capacity));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JSQL-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an update. When the queue is full the calling thread flushes it first,
+     * which slows producers down to the speed of the database
+     *
+     * @param sql    the SQL update to queue
+     * @param params the parameters to bind to it
+     * @throws SQLException If the queue is closed, or the caller had to flush and the flush failed
+     */
+    void enqueue(String sql, Object[] params) throws SQLException {
+        if (closed) {
+            throw new SQLException("The write-behind queue is closed");
+        }
+        PendingUpdate update = new PendingUpdate(sql, params.clone());
+        while (!queue.offer(update)) {
+            flush();
+        }
+        if (closed && queue.remove(update)) {
+            throw new SQLException("The write-behind queue is closed"); // queued after the final flush drained it
+        }
+
+        if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return the amount of updates waiting to be written
+     */
+    int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Writes every pending update. Updates are grouped by SQL text, each group is sent as one
+     * batch in order of first appearance and the whole flush is committed as one transaction.
+     * If that transaction fails every group is retried on its own so one bad statement
+     * does not discard the rest
+     *
+     * @throws SQLException If at least one group could not be written
+     */
+    void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            List<PendingUpdate> drained = new ArrayList<>();
+            queue.drainTo(drained);
+            if (drained.isEmpty()) {
+                return;
+            }
+
+            Map<String, List<Object[]>> batches = new LinkedHashMap<>();
+            for (PendingUpdate update : drained) {
+                batches.computeIfAbsent(update.sql(), key -> new ArrayList<>()).add(update.params());
+            }
+
+            try {
+                sql.executeBatches(batches);
+            } catch (SQLException batchFailure) {
+                SQLException failure = null;
+                for (Map.Entry<String, List<Object[]>> batch : batches.entrySet()) {
+                    try {
+                        sql.executeBatches(Map.of(batch.getKey(), batch.getValue()));
+                    } catch (SQLException exception) {
+                        JDebug.logAlways(Level.SEVERE, "[JSQL] Dropped " + batch.getValue().size() + " queued updates for: " + batch.getKey() + ". Error: " + exception.getMessage());
+                        if (failure == null) {
+                            failure = exception;
+                        } else {
+                            failure.addSuppressed(exception);
+                        }
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException ignored) {
+            // already logged per failed group
+        } catch (RuntimeException e) {
+            JDebug.logAlways(Level.SEVERE, "[JSQL] Write-behind flush failed. Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the flush thread and writes everything still pending, updates queued afterwards are rejected
+     *
+     * @throws SQLException If the final flush fails
+     */
+    void close() throws SQLException {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
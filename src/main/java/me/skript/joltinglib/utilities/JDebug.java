@@ -4,12 +4,140 @@ import me.skript.joltinglib.JoltingLib;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class JDebug {
 
+    private static volatile boolean debugEnabled;
+    private static volatile boolean async;
+    private static final Map<String, Category> CATEGORIES = new ConcurrentHashMap<>();
+
     private JDebug() {}
 
+    /**
+     * A named log category for one subsystem, e.g. {@code sql} or {@code files}, with its own level.
+     * Without a level it follows the debug flag like {@link JDebug#log(Level, String)}.
+     * Levels are set in the {@code log-categories} section of the JoltingLib configuration
+     * or with {@link #setLevel(Level)}
+     */
+    public static final class Category {
+
+        private final String name;
+        private final String prefix;
+        private volatile Level level;
+
+        private Category(String name) {
+            this.name = name;
+            this.prefix = "[" + name + "] ";
+        }
+
+        /**
+         * @return the name of the category
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the lowest level logged, or null if the category follows the debug flag
+         */
+        public Level getLevel() {
+            return level;
+        }
+
+        /**
+         * @param level the lowest level to log, {@link Level#OFF} to log nothing, or null to follow the debug flag
+         */
+        public void setLevel(Level level) {
+            this.level = level;
+        }
+
+        /**
+         * Checks whether a message of the given level would be logged, to skip expensive work otherwise
+         *
+         * @param level the level of the message
+         * @return true if the message is logged
+         */
+        public boolean isEnabled(Level level) {
+            Level threshold = this.level;
+            if (threshold == null) {
+                return debugEnabled;
+            }
+            return threshold != Level.OFF && level.intValue() >= threshold.intValue();
+        }
+
+        /**
+         * Logs a message in this category
+         *
+         * @param level the logging level
+         * @param message the message to be logged
+         */
+        public void log(Level level, String message) {
+            if (isEnabled(level)) {
+                append(level, prefix + message);
+            }
+        }
+
+        /**
+         * Logs a message in this category, building it only if the level is enabled
+         *
+         * @param level the logging level
+         * @param message supplies the message to be logged
+         */
+        public void log(Level level, Supplier<String> message) {
+            if (isEnabled(level)) {
+                append(level, prefix + message.get());
+            }
+        }
+
+        /**
+         * Logs a message in this category, formatting it only if the level is enabled
+         *
+         * @param level the logging level
+         * @param pattern the message, with {@code {}} for the argument
+         * @param arg the argument
+         */
+        public void log(Level level, String pattern, Object arg) {
+            if (isEnabled(level)) {
+                append(level, prefix + format(pattern, arg));
+            }
+        }
+
+        /**
+         * Logs a message in this category, formatting it only if the level is enabled
+         *
+         * @param level the logging level
+         * @param pattern the message, with {@code {}} for each argument
+         * @param first the first argument
+         * @param second the second argument
+         */
+        public void log(Level level, String pattern, Object first, Object second) {
+            if (isEnabled(level)) {
+                append(level, prefix + format(pattern, first, second));
+            }
+        }
+
+        /**
+         * Logs a message in this category, formatting it only if the level is enabled.
+         * The argument array is created even while the level is disabled, so hot paths should use
+         * the one or two argument overloads or {@link #log(Level, Supplier)}
+         *
+         * @param level the logging level
+         * @param pattern the message, with {@code {}} for each argument
+         * @param args the arguments
+         */
+        public void log(Level level, String pattern, Object... args) {
+            if (isEnabled(level)) {
+                append(level, prefix + format(pattern, args));
+            }
+        }
+    }
+
     /**
      * Logs a message to the server console
      *
@@ -37,8 +165,8 @@ public class JDebug {
      * @param message the message to be logged
      */
     public static void log(String message) {
-        if(JoltingLib.getInstance().getConfigurationFile().getBoolean("debug-enabled", false)) {
-            JoltingLib.getInstance().getLogger().log(Level.INFO, message);
+        if(debugEnabled) {
+            append(Level.INFO, message);
         }
     }
 
@@ -49,9 +177,224 @@ public class JDebug {
      * @param message the message to be logged
      */
     public static void log(Level level, String message) {
-        if(JoltingLib.getInstance().getConfigurationFile().getBoolean("debug-enabled", false)) {
-            JoltingLib.getInstance().getLogger().log(level, message);
+        if(debugEnabled) {
+            append(level, message);
+        }
+    }
+
+    /**
+     * Logs a message to the server console, building it only if debugging is enabled
+     *
+     * @param message supplies the message to be logged
+     */
+    public static void log(Supplier<String> message) {
+        if(debugEnabled) {
+            append(Level.INFO, message.get());
+        }
+    }
+
+    /**
+     * Logs a message with a specified log level, building it only if debugging is enabled
+     *
+     * @param level the logging level to indicate the severity of the message
+     * @param message supplies the message to be logged
+     */
+    public static void log(Level level, Supplier<String> message) {
+        if(debugEnabled) {
+            append(level, message.get());
+        }
+    }
+
+    /**
+     * Logs a message to the server console, formatting it only if debugging is enabled
+     *
+     * @param pattern the message, with {@code {}} for the argument
+     * @param arg the argument
+     */
+    public static void log(String pattern, Object arg) {
+        if(debugEnabled) {
+            append(Level.INFO, format(pattern, arg));
+        }
+    }
+
+    /**
+     * Logs a message to the server console, formatting it only if debugging is enabled
+     *
+     * @param pattern the message, with {@code {}} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     */
+    public static void log(String pattern, Object first, Object second) {
+        if(debugEnabled) {
+            append(Level.INFO, format(pattern, first, second));
+        }
+    }
+
+    /**
+     * Logs a message to the server console, formatting it only if debugging is enabled.
+     * The argument array is created even while debugging is disabled, so hot paths should use
+     * the one or two argument overloads or {@link #log(Supplier)}
+     *
+     * @param pattern the message, with {@code {}} for each argument
+     * @param args the arguments
+     */
+    public static void log(String pattern, Object... args) {
+        if(debugEnabled) {
+            append(Level.INFO, format(pattern, args));
+        }
+    }
+
+    /**
+     * Logs a message with a specified log level, formatting it only if debugging is enabled
+     *
+     * @param level the logging level to indicate the severity of the message
+     * @param pattern the message, with {@code {}} for the argument
+     * @param arg the argument
+     */
+    public static void log(Level level, String pattern, Object arg) {
+        if(debugEnabled) {
+            append(level, format(pattern, arg));
+        }
+    }
+
+    /**
+     * Logs a message with a specified log level, formatting it only if debugging is enabled
+     *
+     * @param level the logging level to indicate the severity of the message
+     * @param pattern the message, with {@code {}} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     */
+    public static void log(Level level, String pattern, Object first, Object second) {
+        if(debugEnabled) {
+            append(level, format(pattern, first, second));
+        }
+    }
+
+    /**
+     * Logs a message with a specified log level, formatting it only if debugging is enabled.
+     * The argument array is created even while debugging is disabled, so hot paths should use
+     * the one or two argument overloads or {@link #log(Level, Supplier)}
+     *
+     * @param level the logging level to indicate the severity of the message
+     * @param pattern the message, with {@code {}} for each argument
+     * @param args the arguments
+     */
+    public static void log(Level level, String pattern, Object... args) {
+        if(debugEnabled) {
+            append(level, format(pattern, args));
+        }
+    }
+
+    /**
+     * Logs a message regardless of the debug flag, for warnings server owners must always see
+     *
+     * @param level the logging level to indicate the severity of the message
+     * @param message the message to be logged
+     */
+    public static void logAlways(Level level, String message) {
+        append(level, message);
+    }
+
+    /**
+     * Gets or creates the log category of a subsystem
+     *
+     * @param name the name of the category, case-insensitive
+     * @return the category
+     */
+    public static Category category(String name) {
+        return CATEGORIES.computeIfAbsent(name.toLowerCase(Locale.ROOT), Category::new);
+    }
+
+    /**
+     * Sets the levels of the log categories, resetting every category not listed to follow the debug flag
+     *
+     * @param levels the level of each category by name
+     */
+    public static void setCategoryLevels(Map<String, Level> levels) {
+        for (Category category : CATEGORIES.values()) {
+            category.setLevel(null);
+        }
+        levels.forEach((name, level) -> category(name).setLevel(level));
+    }
+
+    /**
+     * @return true if debug logging is enabled, a plain field read
+     */
+    public static boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    /**
+     * Enables or disables debug logging, set from the JoltingLib configuration whenever it is loaded
+     *
+     * @param enabled whether debug messages are logged
+     */
+    public static void setDebugEnabled(boolean enabled) {
+        debugEnabled = enabled;
+    }
+
+    /**
+     * Makes messages be written from a background thread, so logging never waits on the console.
+     * Messages are formatted on the calling thread, then queued in a bounded buffer that drops the
+     * oldest message when full. Warnings and errors are never queued, they are written right away
+     * after the queued messages, so they cannot be dropped
+     *
+     * @param enabled whether messages are written asynchronously
+     */
+    public static void setAsync(boolean enabled) {
+        async = enabled;
+        if (!enabled) {
+            JLogAppender.flush();
+        }
+    }
+
+    /**
+     * Writes every message still queued by asynchronous logging on the calling thread
+     */
+    public static void flush() {
+        JLogAppender.flush();
+    }
+
+    /**
+     * Stops the asynchronous log thread after writing every queued message, and logs synchronously
+     * from then on. Called when JoltingLib disables, so the thread does not outlive the plugin
+     */
+    public static void shutdown() {
+        async = false;
+        JLogAppender.shutdown();
+    }
+
+    private static void append(Level level, String message) {
+        JoltingLib library = JoltingLib.getInstance();
+        Logger logger = library == null ? Bukkit.getLogger() : library.getLogger();
+        if (async && level.intValue() < Level.WARNING.intValue()) {
+            JLogAppender.append(logger, level, message);
+        } else if (async) {
+            JLogAppender.flush(); // keeps the order with the queued messages
+            logger.log(level, message);
+        } else {
+            logger.log(level, message);
+        }
+    }
+
+    /**
+     * Replaces each {@code {}} of the pattern with the next argument
+     */
+    private static String format(String pattern, Object... args) {
+        if (args == null || args.length == 0) {
+            return pattern;
+        }
+
+        StringBuilder message = new StringBuilder(pattern.length() + args.length * 16);
+        int start = 0;
+        int arg = 0;
+        int index;
+        while (arg < args.length && (index = pattern.indexOf("{}", start)) >= 0) {
+            message.append(pattern, start, index).append(args[arg++]);
+            start = index + 2;
         }
+        return message.append(pattern, start, pattern.length()).toString();
     }
 
     /**
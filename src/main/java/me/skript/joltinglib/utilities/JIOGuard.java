@@ -0,0 +1,219 @@
+package me.skript.joltinglib.utilities;
+
+import org.bukkit.Bukkit;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Detects blocking I/O done through JoltingLib on the server main thread, such as
+ * {@code JSQL.executeQuery} or {@code JYML.saveConfig}. Every violation is attributed to the
+ * first caller outside the library, together with its duration and a sampled stack trace,
+ * so the offending code can be found and moved off the main thread.
+ * Disabled by default, set {@code main-thread-io} in the configuration to enable it
+ */
+public final class JIOGuard {
+
+    /**
+     * What happens when blocking I/O runs on the main thread
+     */
+    public enum Mode {
+        /** Nothing is checked */
+        OFF,
+        /** The violation is counted, the first and every n-th one of a call site are logged with the call site */
+        WARN,
+        /** The violation is only counted, see {@link #getViolations()} */
+        COUNT,
+        /** The violation is counted and the call fails with an {@link IllegalStateException} */
+        THROW
+    }
+
+    /**
+     * Statistics of one call site
+     *
+     * @param callSite    the first caller outside the library
+     * @param operation   the library method called last from that call site
+     * @param count       the amount of violations
+     * @param totalMillis the total time spent blocking the main thread in milliseconds
+     * @param maxMillis   the longest single call in milliseconds
+     * @param sampleStack the most recently sampled stack trace, may be empty if none was sampled yet
+     */
+    public record Violation(String callSite, String operation, long count, double totalMillis, double maxMillis,
+                            List<StackTraceElement> sampleStack) {}
+
+    /**
+     * Returned by {@link #begin(String)} when the call is not tracked
+     */
+    public static final long NOT_TRACKED = Long.MIN_VALUE;
+
+    private static final String LIBRARY_PACKAGE = "me.skript.joltinglib.";
+    private static final int MAX_CALL_SITES = 1000;
+    private static final int MAX_STACK_DEPTH = 16;
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private static volatile Mode mode = Mode.OFF;
+    private static volatile int sampleEvery = 100;
+    private static final Map<String, CallSite> callSites = new ConcurrentHashMap<>();
+    private static int depth; // only touched on the main thread
+
+    private JIOGuard() {}
+
+    /**
+     * @param newMode what to do on main-thread I/O
+     */
+    public static void setMode(Mode newMode) {
+        mode = newMode == null ? Mode.OFF : newMode;
+    }
+
+    /**
+     * @return what is done on main-thread I/O
+     */
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets how often the full stack of a call site is sampled, and in WARN mode logged. The first
+     * violation of a call site is always sampled. Other violations only look up the first frame outside
+     * the library, walking the whole stack for every call would add to the lag
+     *
+     * @param every sample every n-th violation of a call site
+     */
+    public static void setSampleRate(int every) {
+        sampleEvery = Math.max(1, every);
+    }
+
+    /**
+     * @return true if the current thread is the server main thread
+     */
+    public static boolean isPrimaryThread() {
+        return Bukkit.getServer() != null && Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Marks the start of a blocking library call. Nested calls are only tracked once.
+     * Pair every call with {@link #end(String, long)} in a finally block
+     *
+     * @param operation the name of the library method, e.g. {@code JSQL.executeQuery}
+     * @return the start time to pass to {@link #end(String, long)}, or {@link #NOT_TRACKED}
+     * @throws IllegalStateException If the mode is {@link Mode#THROW} and this is the main thread
+     */
+    public static long begin(String operation) {
+        Mode current = mode;
+        if (current == Mode.OFF || depth > 0 || !isPrimaryThread()) {
+            return NOT_TRACKED;
+        }
+
+        if (current == Mode.THROW) {
+            record(operation, 0);
+            throw new IllegalStateException(operation + " does blocking I/O and must not be called on the main thread");
+        }
+        depth++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a blocking library call, recording it if it was tracked
+     *
+     * @param operation the name passed to {@link #begin(String)}
+     * @param start     the value returned by {@link #begin(String)}
+     */
+    public static void end(String operation, long start) {
+        if (start == NOT_TRACKED) {
+            return;
+        }
+        depth--;
+        record(operation, System.nanoTime() - start);
+    }
+
+    private static void record(String operation, long nanos) {
+        List<StackTraceElement> top = walk(1);
+        String callSite = top.isEmpty() ? "<unknown>" : top.get(0).toString();
+
+        CallSite site = callSites.get(callSite);
+        if (site == null) {
+            String key = callSites.size() < MAX_CALL_SITES ? callSite : "<other>";
+            site = callSites.computeIfAbsent(key, k -> new CallSite());
+        }
+
+        long count = site.record(operation, nanos);
+        boolean sampled = count == 1 || count % sampleEvery == 0;
+        if (!sampled) {
+            return;
+        }
+        List<StackTraceElement> stack = walk(MAX_STACK_DEPTH);
+        site.sampleStack = stack;
+
+        if (mode == Mode.WARN) {
+            StringBuilder message = new StringBuilder(String.format(Locale.ROOT,
+                    "[JIOGuard] %s blocked the main thread for %.2f ms, called from %s (%d times so far)",
+                    operation, nanos / 1_000_000.0, callSite, count));
+            for (int i = 1; i < stack.size(); i++) {
+                message.append("\n    at ").append(stack.get(i));
+            }
+            JDebug.logAlways(Level.WARNING, message.toString());
+        }
+    }
+
+    /**
+     * @return up to the given amount of frames outside the library, innermost first
+     */
+    private static List<StackTraceElement> walk(int limit) {
+        return WALKER.walk(frames -> frames
+                .filter(frame -> !frame.getClassName().startsWith(LIBRARY_PACKAGE)
+                        || frame.getClassName().equals("me.skript.joltinglib.JoltingLib"))
+                .limit(limit)
+                .map(StackWalker.StackFrame::toStackTraceElement)
+                .toList());
+    }
+
+    /**
+     * @return every call site that did blocking I/O on the main thread, the worst offenders first
+     */
+    public static List<Violation> getViolations() {
+        List<Violation> violations = new ArrayList<>();
+        callSites.forEach((callSite, site) -> violations.add(new Violation(callSite, site.operation,
+                site.count.sum(), site.totalNanos.sum() / 1_000_000.0, site.maxNanos.get() / 1_000_000.0,
+                site.sampleStack)));
+        violations.sort(Comparator.comparingDouble(Violation::totalMillis).reversed());
+        return violations;
+    }
+
+    /**
+     * @return the total amount of blocking calls made on the main thread
+     */
+    public static long getViolationCount() {
+        long total = 0;
+        for (CallSite site : callSites.values()) {
+            total += site.count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Clears every recorded violation
+     */
+    public static void reset() {
+        callSites.clear();
+    }
+
+    private static final class CallSite {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile String operation;
+        private volatile List<StackTraceElement> sampleStack = List.of();
+
+        long record(String operation, long nanos) {
+            this.operation = operation;
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            return count.sum();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package me.skript.joltinglib.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the log messages of {@link JDebug} below {@link Level#WARNING} from a background thread.
+ * Messages are kept in a bounded ring buffer, so logging never blocks the calling thread;
+ * when the buffer is full the oldest message is dropped and the amount of dropped messages
+ * is reported once the thread catches up. The thread starts with the first queued message
+ * and is stopped by {@link #shutdown()}
+ */
+final class JLogAppender {
+
+    private static final int CAPACITY = 8192;
+    private static final long POLL_MILLIS = 100;
+    private static final long JOIN_MILLIS = 5000;
+
+    private static final ArrayBlockingQueue<Entry> BUFFER = new ArrayBlockingQueue<>(CAPACITY);
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final Object WRITE_LOCK = new Object();
+    private static volatile Thread writer;
+
+    private record Entry(Logger logger, Level level, String message) {}
+
+    private JLogAppender() {}
+
+    /**
+     * Queues a message to be logged on the background thread
+     *
+     * @param logger  the logger to write to
+     * @param level   the level of the message
+     * @param message the message
+     */
+    static void append(Logger logger, Level level, String message) {
+        if (writer == null) {
+            start();
+        }
+        Entry entry = new Entry(logger, level, message);
+        while (!BUFFER.offer(entry)) {
+            if (BUFFER.poll() != null) {
+                DROPPED.increment();
+            }
+        }
+    }
+
+    /**
+     * Writes every queued message on the calling thread
+     */
+    static void flush() {
+        List<Entry> batch = new ArrayList<>();
+        synchronized (WRITE_LOCK) {
+            BUFFER.drainTo(batch);
+            write(batch);
+        }
+    }
+
+    /**
+     * Stops the background thread, waiting for it to finish, and writes every message still queued
+     * on the calling thread. A message queued afterwards starts a new thread
+     */
+    static void shutdown() {
+        Thread thread;
+        synchronized (JLogAppender.class) {
+            thread = writer;
+            writer = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join(JOIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private static synchronized void start() {
+        if (writer == null) {
+            Thread thread = new Thread(JLogAppender::run, "JoltingLib-Logger");
+            thread.setDaemon(true);
+            writer = thread;
+            thread.start();
+        }
+    }
+
+    private static void run() {
+        List<Entry> batch = new ArrayList<>();
+        try {
+            while (writer == Thread.currentThread()) {
+                Entry first = BUFFER.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                synchronized (WRITE_LOCK) {
+                    batch.add(first);
+                    BUFFER.drainTo(batch);
+                    write(batch);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void write(List<Entry> batch) {
+        for (Entry entry : batch) {
+            entry.logger().log(entry.level(), entry.message());
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+        long dropped = DROPPED.sumThenReset();
+        if (dropped > 0) {
+            batch.getFirst().logger().log(Level.WARNING, "Dropped " + dropped + " log messages, the log buffer was full");
+        }
+    }
+}